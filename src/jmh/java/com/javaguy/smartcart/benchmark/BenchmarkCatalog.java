@@ -0,0 +1,43 @@
+package com.javaguy.smartcart.benchmark;
+
+import com.javaguy.smartcart.SmartcartApplication;
+import com.javaguy.smartcart.search.FuzzySearchIndex;
+import com.javaguy.smartcart.search.ProductNameMatcher;
+import com.javaguy.smartcart.search.ProductSearchIndex;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application without a web server on a private in-memory database holding a
+ * synthetic catalog, and waits until the in-memory indexes are built.
+ */
+public final class BenchmarkCatalog {
+
+    private BenchmarkCatalog() {
+    }
+
+    public static ConfigurableApplicationContext start(int catalogSize) throws InterruptedException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SmartcartApplication.class,
+                BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                // arguments rather than default properties, which application.yml would override
+                .run("--benchmark.catalog-size=" + catalogSize,
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark-" + catalogSize,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.javaguy.smartcart.benchmark=INFO",
+                        "--smartcart.semantic.embedding-provider=none",
+                        "--smartcart.recommendations.warm-on-startup=false",
+                        // every fall-through exercises the full enhanced path instead of a cache hit
+                        "--smartcart.llm.cache.ttl=0s");
+        ProductSearchIndex searchIndex = context.getBean(ProductSearchIndex.class);
+        ProductNameMatcher nameMatcher = context.getBean(ProductNameMatcher.class);
+        FuzzySearchIndex fuzzyIndex = context.getBean(FuzzySearchIndex.class);
+        while (!searchIndex.isReady() || !nameMatcher.isReady() || !fuzzyIndex.isReady()) {
+            Thread.sleep(100);
+        }
+        return context;
+    }
+}
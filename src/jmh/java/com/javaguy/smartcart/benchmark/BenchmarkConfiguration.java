@@ -0,0 +1,84 @@
+package com.javaguy.smartcart.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the Ollama chat model with {@link StubChatModel} and fills the catalog with
+ * {@code benchmark.catalog-size} synthetic products before the search indexes are built.
+ */
+@Configuration
+public class BenchmarkConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkConfiguration.class);
+    private static final int INSERT_BATCH = 5000;
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    static final String[] CATEGORIES = {"Electronics", "Books", "Toys", "Fashion", "Grocery", "Beauty", "Clothing", "Sports"};
+    static final String[] BRANDS = {"Apple", "Sony", "Samsung", "Nike", "Adidas", "Lego", "Manning", "Philips", "Canon", "Dell"};
+    static final String[] ADJECTIVES = {"Wireless", "Portable", "Classic", "Premium", "Compact", "Organic", "Ultra", "Smart"};
+    static final String[] NOUNS = {"Headphones", "Speaker", "Novel", "Puzzle", "Jacket", "Serum", "Sneakers", "Camera",
+            "Backpack", "Keyboard", "Blender", "Lamp"};
+
+    @Bean
+    @Primary
+    public ChatModel stubChatModel() {
+        return new StubChatModel();
+    }
+
+    @Bean
+    public CommandLineRunner syntheticCatalog(JdbcTemplate jdbcTemplate,
+                                              @Value("${benchmark.catalog-size:1000}") int catalogSize) {
+        return args -> {
+            long startTime = System.currentTimeMillis();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+            long nextId = 0;
+            long lastReservedId = -1;
+            for (int i = 0; i < catalogSize; i++) {
+                if (nextId > lastReservedId) {
+                    lastReservedId = reserveIds(jdbcTemplate);
+                    nextId = lastReservedId - ID_ALLOCATION_SIZE + 1;
+                }
+                String category = CATEGORIES[i % CATEGORIES.length];
+                String name = BRANDS[i % BRANDS.length] + " " + ADJECTIVES[(i / 7) % ADJECTIVES.length] + " "
+                        + NOUNS[(i / 3) % NOUNS.length] + " " + i;
+                batch.add(new Object[]{nextId++, name, "Synthetic " + category.toLowerCase() + " product number " + i,
+                        BigDecimal.valueOf(5 + i % 995), category, BRANDS[i % BRANDS.length], 100, now});
+                if (batch.size() == INSERT_BATCH || i == catalogSize - 1) {
+                    jdbcTemplate.batchUpdate("INSERT INTO products (id, name, description, price, category, "
+                            + "brand, stock_quantity, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", batch);
+                    batch.clear();
+                }
+            }
+            jdbcTemplate.update("INSERT INTO product_tags (product_id, tags) SELECT id, LOWER(category) FROM products");
+            log.info("Seeded {} synthetic products in {}ms", catalogSize, System.currentTimeMillis() - startTime);
+        };
+    }
+
+    /**
+     * Takes a value from products_seq and returns the highest id of the block it stands for,
+     * read the way Hibernate's pooled optimizer reads it, so the synthetic ids are as dense as
+     * those of products saved through JPA and never collide with them.
+     */
+    private static long reserveIds(JdbcTemplate jdbcTemplate) {
+        long hi;
+        do {
+            hi = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR products_seq", Long.class);
+        } while (hi < ID_ALLOCATION_SIZE);
+        return hi;
+    }
+}
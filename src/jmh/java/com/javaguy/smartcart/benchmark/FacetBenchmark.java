@@ -0,0 +1,79 @@
+package com.javaguy.smartcart.benchmark;
+
+import com.javaguy.smartcart.dto.FacetFilter;
+import com.javaguy.smartcart.dto.FacetedProducts;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.repository.ProductRepository;
+import com.javaguy.smartcart.search.FacetIndex;
+import com.javaguy.smartcart.service.FacetedSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facet filtering and counting from the bitmap index, against the exact category query that
+ * was the only filter before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class FacetBenchmark {
+
+    private static final FacetFilter FILTER = new FacetFilter(Set.of("Electronics", "Books"), Set.of("Sony", "Apple"),
+            Set.of(), new BigDecimal("100"), new BigDecimal("500"), true);
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private FacetIndex facetIndex;
+    private FacetedSearchService facetedSearchService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkCatalog.start(catalogSize);
+        productRepository = context.getBean(ProductRepository.class);
+        facetIndex = context.getBean(FacetIndex.class);
+        facetedSearchService = context.getBean(FacetedSearchService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Product> findByCategory() {
+        return productRepository.findByCategory("Electronics");
+    }
+
+    @Benchmark
+    public FacetIndex.Result facetCounts() {
+        return facetIndex.query(FILTER, null, 20);
+    }
+
+    @Benchmark
+    public FacetedProducts facetedPage() {
+        return facetedSearchService.search(FILTER, null, 0, 20);
+    }
+}
@@ -0,0 +1,76 @@
+package com.javaguy.smartcart.benchmark;
+
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.repository.ProductRepository;
+import com.javaguy.smartcart.service.AISearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The product search paths: the original LIKE query and {@code intelligentSearch} when the
+ * traditional tier hits, when a misspelled query is caught by the fuzzy tier and when it falls
+ * through to the (stubbed) chat model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private AISearchService searchService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkCatalog.start(catalogSize);
+        productRepository = context.getBean(ProductRepository.class);
+        searchService = context.getBean(AISearchService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Product> findBySearchQuery() {
+        return productRepository.findBySearchQuery("portable camera");
+    }
+
+    @Benchmark
+    public List<ProductView> intelligentSearchTraditionalHit() {
+        return searchService.intelligentSearch("portable camera");
+    }
+
+    @Benchmark
+    public List<ProductView> intelligentSearchTypo() {
+        return searchService.intelligentSearch("portabel camra");
+    }
+
+    @Benchmark
+    public List<ProductView> intelligentSearchFallThrough() {
+        return searchService.intelligentSearch("gizmo for listening");
+    }
+}
@@ -0,0 +1,29 @@
+package com.javaguy.smartcart.benchmark;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+
+/**
+ * Answers every prompt instantly with the same text, so benchmarks measure our own code
+ * rather than Ollama.
+ */
+public class StubChatModel implements ChatModel {
+
+    public static final String RESPONSE = "Wireless Headphones, Electronics, Sony, noise cancelling";
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(RESPONSE))));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ChatOptions.builder().model("stub").build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.javaguy.smartcart.inventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flash-sale contention: every thread reserves units of the same product. Compares the
+ * ledger's compare-and-set counters with the same decisions taken under a lock, the in-memory
+ * equivalent of serializing on the product's database row. Run with {@code -t} to vary the
+ * number of threads hammering the SKU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class StockLedgerBenchmark {
+
+    private static final long HOT_SKU = 42L;
+
+    private StockLedger ledger;
+    private int lockedAvailable;
+    private int lockedHeld;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // enough stock that no iteration sells out
+        ledger = new StockLedger();
+        ledger.track(HOT_SKU, Integer.MAX_VALUE);
+        lockedAvailable = Integer.MAX_VALUE;
+        lockedHeld = 0;
+    }
+
+    @Benchmark
+    public boolean ledgerCheckout() {
+        boolean reserved = ledger.reserve(HOT_SKU, 1);
+        if (reserved) {
+            ledger.commit(HOT_SKU, 1);
+        }
+        return reserved;
+    }
+
+    @Benchmark
+    public boolean ledgerReserveAndRelease() {
+        boolean reserved = ledger.reserve(HOT_SKU, 1);
+        if (reserved) {
+            ledger.release(HOT_SKU, 1);
+        }
+        return reserved;
+    }
+
+    @Benchmark
+    public boolean lockedCheckout() {
+        synchronized (this) {
+            if (lockedAvailable < 1) {
+                return false;
+            }
+            lockedAvailable--;
+            lockedHeld++;
+        }
+        synchronized (this) {
+            lockedHeld--;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,296 @@
+package com.javaguy.smartcart.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.javaguy.smartcart.search.LocalHashingEmbeddingModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for Ollama that speaks enough of its HTTP API for Spring AI: {@code /api/chat}
+ * (blocking and NDJSON streaming), {@code /api/embed} and {@code /api/tags}. Responses are
+ * scripted and timing is synthetic, so load tests are reproducible without a GPU:
+ * <ul>
+ *     <li>{@code --port=11434}</li>
+ *     <li>{@code --latency=lognormal:300ms,0.5} time to first token, see {@link LatencyDistribution}</li>
+ *     <li>{@code --tokens-per-second=40} generation rate after the first token</li>
+ *     <li>{@code --parallel=1} requests served at once, like {@code OLLAMA_NUM_PARALLEL}; the rest queue</li>
+ *     <li>{@code --script=responses.txt} lines of {@code regex => response}, matched against the
+ *     last user message in order; the first match wins</li>
+ *     <li>{@code --default-response=...} used when no script line matches</li>
+ *     <li>{@code --embedding-dimensions=768} and {@code --seed=42}</li>
+ * </ul>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec
+ * -Dbenchmark.main=com.javaguy.smartcart.loadtest.FakeOllamaServer -Dbenchmark.args="--latency=fixed:200ms"}.
+ */
+public class FakeOllamaServer {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Pattern TOKEN = Pattern.compile("\\S+\\s*");
+
+    record ScriptedResponse(Pattern pattern, String response) {}
+
+    private final LatencyDistribution latency;
+    private final double tokensPerSecond;
+    private final Semaphore slots;
+    private final List<ScriptedResponse> script;
+    private final String defaultResponse;
+    private final LocalHashingEmbeddingModel embeddingModel;
+    private final RandomGenerator random;
+    private HttpServer server;
+
+    public FakeOllamaServer(LatencyDistribution latency, double tokensPerSecond, int parallel,
+                            List<ScriptedResponse> script, String defaultResponse, int embeddingDimensions, long seed) {
+        this.latency = latency;
+        this.tokensPerSecond = tokensPerSecond;
+        this.slots = new Semaphore(parallel, true);
+        this.script = script;
+        this.defaultResponse = defaultResponse;
+        this.embeddingModel = new LocalHashingEmbeddingModel(embeddingDimensions);
+        this.random = RandomGeneratorFactory.of("L64X128MixRandom").create(seed);
+    }
+
+    public static void main(String[] rawArgs) throws IOException {
+        Args args = new Args(rawArgs);
+        List<ScriptedResponse> script = args.get("script", null) == null
+                ? List.of()
+                : loadScript(Path.of(args.get("script", null)));
+        FakeOllamaServer fake = new FakeOllamaServer(
+                LatencyDistribution.parse(args.get("latency", "lognormal:300ms,0.5")),
+                args.getDouble("tokens-per-second", 40),
+                args.getInt("parallel", 1),
+                script,
+                args.get("default-response", "Electronics, Sports, running shoes, laptop"),
+                args.getInt("embedding-dimensions", 768),
+                args.getInt("seed", 42));
+        fake.start(args.getInt("port", 11434));
+    }
+
+    static List<ScriptedResponse> loadScript(Path file) throws IOException {
+        List<ScriptedResponse> script = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int arrow = line.indexOf("=>");
+            if (line.isBlank() || line.startsWith("#") || arrow < 0) {
+                continue;
+            }
+            script.add(new ScriptedResponse(Pattern.compile(line.substring(0, arrow).trim(), Pattern.CASE_INSENSITIVE),
+                    line.substring(arrow + 2).trim()));
+        }
+        return script;
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/chat", this::handle);
+        server.createContext("/api/embed", this::handle);
+        server.createContext("/api/tags", this::handle);
+        server.start();
+        System.out.printf("Fake Ollama listening on 127.0.0.1:%d%n", server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                dispatch(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (JsonProcessingException e) {
+                sendError(exchange, 400, "invalid request: " + e.getOriginalMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException, InterruptedException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/api/tags")) {
+            writeJson(exchange, objectMapper.createObjectNode().set("models", objectMapper.createArrayNode()));
+            return;
+        }
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        slots.acquire();
+        try {
+            if (path.equals("/api/embed")) {
+                embed(exchange, request);
+            } else if (request.path("stream").asBoolean(true)) {
+                streamChat(exchange, request);
+            } else {
+                chat(exchange, request);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Answers with an Ollama-style error, unless the response has already started, as a stream
+     * that fails midway has; closing the exchange then cuts the stream short.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        writeJson(exchange, status, objectMapper.createObjectNode().put("error", message));
+    }
+
+    private void chat(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        String prompt = lastUserMessage(request);
+        List<String> tokens = tokens(respond(prompt));
+        Duration firstToken = sampleLatency();
+        Duration generation = generationTime(tokens.size());
+        Thread.sleep(firstToken.plus(generation));
+        ObjectNode response = message(request, String.join("", tokens), true);
+        addCounts(response, prompt, tokens.size(), firstToken.plus(generation));
+        writeJson(exchange, response);
+    }
+
+    private void streamChat(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        String prompt = lastUserMessage(request);
+        List<String> tokens = tokens(respond(prompt));
+        Duration firstToken = sampleLatency();
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        Thread.sleep(firstToken);
+        long tokenNanos = (long) (1_000_000_000L / tokensPerSecond);
+        for (String token : tokens) {
+            writeLine(body, message(request, token, false));
+            Thread.sleep(Duration.ofNanos(tokenNanos));
+        }
+        ObjectNode done = message(request, "", true);
+        addCounts(done, prompt, tokens.size(), firstToken.plus(generationTime(tokens.size())));
+        writeLine(body, done);
+    }
+
+    private void embed(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        JsonNode input = request.path("input");
+        List<String> texts = new ArrayList<>();
+        if (input.isArray()) {
+            input.forEach(text -> texts.add(text.asText()));
+        } else {
+            texts.add(input.asText());
+        }
+        Duration took = sampleLatency().dividedBy(10);
+        Thread.sleep(took);
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", request.path("model").asText());
+        ArrayNode embeddings = response.putArray("embeddings");
+        for (String text : texts) {
+            ArrayNode vector = embeddings.addArray();
+            for (float value : embeddingModel.embed(text)) {
+                vector.add(value);
+            }
+        }
+        response.put("total_duration", took.toNanos());
+        response.put("prompt_eval_count", texts.stream().mapToInt(text -> tokens(text).size()).sum());
+        writeJson(exchange, response);
+    }
+
+    private String respond(String prompt) {
+        for (ScriptedResponse scripted : script) {
+            if (scripted.pattern().matcher(prompt).find()) {
+                return scripted.response();
+            }
+        }
+        return defaultResponse;
+    }
+
+    private Duration sampleLatency() {
+        synchronized (random) {
+            return latency.sample(random);
+        }
+    }
+
+    private Duration generationTime(int tokenCount) {
+        return Duration.ofNanos((long) (tokenCount / tokensPerSecond * 1_000_000_000L));
+    }
+
+    private static String lastUserMessage(JsonNode request) {
+        String prompt = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                prompt = message.path("content").asText();
+            }
+        }
+        return prompt;
+    }
+
+    /**
+     * Words with their trailing whitespace, roughly how a model streams text.
+     */
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    private static ObjectNode message(JsonNode request, String content, boolean done) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", request.path("model").asText());
+        response.put("created_at", Instant.now().toString());
+        ObjectNode message = response.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        response.put("done", done);
+        if (done) {
+            response.put("done_reason", "stop");
+        }
+        return response;
+    }
+
+    private static void addCounts(ObjectNode response, String prompt, int completionTokens, Duration took) {
+        response.put("total_duration", took.toNanos());
+        response.put("prompt_eval_count", tokens(prompt).size());
+        response.put("eval_count", completionTokens);
+    }
+
+    private static void writeJson(HttpExchange exchange, JsonNode json) throws IOException {
+        writeJson(exchange, 200, json);
+    }
+
+    private static void writeJson(HttpExchange exchange, int status, JsonNode json) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(json);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void writeLine(OutputStream body, JsonNode json) throws IOException {
+        body.write(objectMapper.writeValueAsBytes(json));
+        body.write('\n');
+        body.flush();
+    }
+}
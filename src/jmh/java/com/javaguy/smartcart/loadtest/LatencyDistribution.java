@@ -0,0 +1,72 @@
+package com.javaguy.smartcart.loadtest;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Latency model for the fake Ollama server, parsed from a spec:
+ * <ul>
+ *     <li>{@code fixed:200ms}</li>
+ *     <li>{@code uniform:100ms-400ms}</li>
+ *     <li>{@code lognormal:300ms,0.5} &mdash; median and sigma of the underlying normal, which
+ *     gives the long tail real model servers show under load</li>
+ * </ul>
+ */
+sealed interface LatencyDistribution {
+
+    Duration sample(RandomGenerator random);
+
+    record Fixed(Duration latency) implements LatencyDistribution {
+        public Duration sample(RandomGenerator random) {
+            return latency;
+        }
+    }
+
+    record Uniform(Duration min, Duration max) implements LatencyDistribution {
+        public Duration sample(RandomGenerator random) {
+            return Duration.ofNanos(random.nextLong(min.toNanos(), max.toNanos() + 1));
+        }
+    }
+
+    record LogNormal(Duration median, double sigma) implements LatencyDistribution {
+        public Duration sample(RandomGenerator random) {
+            return Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * random.nextGaussian())));
+        }
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String[] kindAndValue = spec.split(":", 2);
+        if (kindAndValue.length != 2) {
+            throw new IllegalArgumentException("Latency spec must look like kind:value but was " + spec);
+        }
+        String value = kindAndValue[1];
+        return switch (kindAndValue[0]) {
+            case "fixed" -> new Fixed(parseDuration(value));
+            case "uniform" -> {
+                String[] bounds = value.split("-", 2);
+                yield new Uniform(parseDuration(bounds[0]), parseDuration(bounds[1]));
+            }
+            case "lognormal" -> {
+                String[] parameters = value.split(",", 2);
+                yield new LogNormal(parseDuration(parameters[0]), Double.parseDouble(parameters[1]));
+            }
+            default -> throw new IllegalArgumentException("Unknown latency distribution " + kindAndValue[0]);
+        };
+    }
+
+    /**
+     * {@code 250ms}, {@code 2s} or {@code 1m}.
+     */
+    static Duration parseDuration(String value) {
+        String trimmed = value.trim();
+        if (trimmed.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(trimmed.substring(0, trimmed.length() - 2)));
+        }
+        long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+        return switch (trimmed.charAt(trimmed.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Unknown duration unit in " + value);
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package com.javaguy.smartcart.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop load generator for the REST API. Each of {@code --concurrency} virtual-thread
+ * workers sends one request at a time, picking endpoints by weight, and the report lists
+ * throughput and latency percentiles per endpoint. Point the application at
+ * {@link FakeOllamaServer} to make runs reproducible:
+ * <ul>
+ *     <li>{@code --base-url=http://localhost:8082}</li>
+ *     <li>{@code --endpoints="GET /api/products/search?query=laptop@3;GET /api/products/recommendations/1"}
+ *     semicolon separated, with an optional {@code @weight}</li>
+ *     <li>{@code --concurrency=16}, {@code --warmup=5s}, {@code --duration=30s}, {@code --timeout=30s}</li>
+ *     <li>{@code --output=target/load-report.json} to also write the report as JSON</li>
+ * </ul>
+ * Responses are read to the end, so streaming endpoints are timed until their last event.
+ */
+public class LoadHarness {
+
+    record Endpoint(String name, String method, String path, int weight) {
+        static Endpoint parse(String spec) {
+            String trimmed = spec.trim();
+            int weight = 1;
+            int at = trimmed.lastIndexOf('@');
+            if (at > 0) {
+                weight = Integer.parseInt(trimmed.substring(at + 1));
+                trimmed = trimmed.substring(0, at).trim();
+            }
+            String[] methodAndPath = trimmed.split("\\s+", 2);
+            return new Endpoint(trimmed, methodAndPath[0].toUpperCase(Locale.ROOT), methodAndPath[1], weight);
+        }
+    }
+
+    record EndpointReport(String endpoint, long requests, long errors, double throughputPerSecond,
+                          double p50Millis, double p90Millis, double p99Millis, double maxMillis) {}
+
+    /**
+     * Latencies of one endpoint; appended to by every worker, read once at the end.
+     */
+    static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void record(long nanos, boolean error) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointReport report(String endpoint, Duration measured) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new EndpointReport(endpoint, count, errors, count / (measured.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    count == 0 ? 0 : sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final List<Endpoint> endpoints;
+    private final int totalWeight;
+    private final Duration timeout;
+
+    public LoadHarness(String baseUrl, List<Endpoint> endpoints, Duration timeout) {
+        this.baseUrl = baseUrl;
+        this.endpoints = endpoints;
+        this.totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] rawArgs) throws Exception {
+        Args args = new Args(rawArgs);
+        List<Endpoint> endpoints = Arrays.stream(args.get("endpoints",
+                        "GET /api/products/search?query=laptop;GET /api/products/recommendations/1").split(";"))
+                .filter(spec -> !spec.isBlank())
+                .map(Endpoint::parse)
+                .toList();
+        LoadHarness harness = new LoadHarness(args.get("base-url", "http://localhost:8082"), endpoints,
+                args.getDuration("timeout", Duration.ofSeconds(30)));
+        int concurrency = args.getInt("concurrency", 16);
+
+        Duration warmup = args.getDuration("warmup", Duration.ofSeconds(5));
+        System.out.printf("Warming up for %ss with %d workers%n", warmup.toSeconds(), concurrency);
+        harness.run(concurrency, warmup);
+        Duration duration = args.getDuration("duration", Duration.ofSeconds(30));
+        System.out.printf("Measuring for %ss with %d workers%n", duration.toSeconds(), concurrency);
+        List<EndpointReport> reports = harness.run(concurrency, duration);
+
+        System.out.printf("%-60s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (EndpointReport report : reports) {
+            System.out.printf("%-60s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", report.endpoint(), report.requests(),
+                    report.errors(), report.throughputPerSecond(), report.p50Millis(), report.p90Millis(),
+                    report.p99Millis(), report.maxMillis());
+        }
+        String output = args.get("output", null);
+        if (output != null) {
+            Files.writeString(Path.of(output), new ObjectMapper()
+                    .writerWithDefaultPrettyPrinter().writeValueAsString(reports), StandardCharsets.UTF_8);
+        }
+    }
+
+    public List<EndpointReport> run(int concurrency, Duration duration) throws InterruptedException {
+        Recorder[] recorders = new Recorder[endpoints.size()];
+        Arrays.setAll(recorders, i -> new Recorder());
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                workers.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int index = pick();
+                        long start = System.nanoTime();
+                        boolean error = !send(endpoints.get(index));
+                        recorders[index].record(System.nanoTime() - start, error);
+                    }
+                });
+            }
+        }
+        List<EndpointReport> reports = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            reports.add(recorders[i].report(endpoints.get(i).name(), duration));
+        }
+        return reports;
+    }
+
+    private int pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = 0; i < endpoints.size(); i++) {
+            ticket -= endpoints.get(i).weight();
+            if (ticket < 0) {
+                return i;
+            }
+        }
+        return endpoints.size() - 1;
+    }
+
+    private boolean send(Endpoint endpoint) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path()))
+                .timeout(timeout)
+                .method(endpoint.method(), HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            return response.statusCode() < 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.javaguy.smartcart.recommendation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Neighbour and per-customer lookups in the co-purchase matrix, and the incremental update
+ * after one purchase. Histories of 1 to 20 products are drawn with a skew towards low ids, so a
+ * few products are bought by many customers, as in a real shop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class CoPurchaseBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+
+    @Param({"10000", "100000"})
+    public int customers;
+
+    private CoPurchaseMatrix matrix;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        matrix = new CoPurchaseMatrix();
+        for (long customerId = 0; customerId < customers; customerId++) {
+            matrix.setHistory(customerId, randomHistory(1 + random.nextInt(20)));
+        }
+    }
+
+    @Benchmark
+    public List<CoPurchaseMatrix.Neighbour> popularProductNeighbours() {
+        return matrix.neighbours(randomProduct(), 10);
+    }
+
+    @Benchmark
+    public List<CoPurchaseMatrix.Neighbour> customerRecommendations() {
+        return matrix.recommendFor(random.nextInt(customers), 5);
+    }
+
+    @Benchmark
+    public void addPurchase() {
+        long customerId = random.nextInt(customers);
+        List<Long> history = randomHistory(1 + random.nextInt(20));
+        matrix.setHistory(customerId, history);
+    }
+
+    private List<Long> randomHistory(int size) {
+        List<Long> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            history.add(randomProduct());
+        }
+        return history;
+    }
+
+    private long randomProduct() {
+        // squaring a uniform draw favours low ids
+        double draw = random.nextDouble();
+        return (long) (draw * draw * PRODUCTS);
+    }
+}
@@ -0,0 +1,65 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.benchmark.BenchmarkCatalog;
+import com.javaguy.smartcart.benchmark.StubChatModel;
+import com.javaguy.smartcart.dto.ProductView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt building and response parsing around the recommendation model call. Lives in the
+ * service package to reach the package-private prompt builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx4g"})
+public class RecommendationBenchmark {
+
+    private static final long CUSTOMER_ID = 1L;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private AIRecommendationService recommendationService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkCatalog.start(catalogSize);
+        recommendationService = context.getBean(AIRecommendationService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ProductView> parseRecommendationsAndFindProducts() {
+        return recommendationService.findRecommendedProducts(StubChatModel.RESPONSE);
+    }
+
+    @Benchmark
+    public Prompt createRecommendationPrompt() {
+        return recommendationService.createRecommendationPrompt(CUSTOMER_ID);
+    }
+}
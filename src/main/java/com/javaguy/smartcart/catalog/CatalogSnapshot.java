@@ -0,0 +1,190 @@
+package com.javaguy.smartcart.catalog;
+
+import com.javaguy.smartcart.dto.ProductView;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One immutable version of the product catalog. Products are kept in id order in a plain
+ * array with a parallel sorted {@code long[]} of ids, so a lookup is a binary search without
+ * boxing, and each category is an {@code int[]} of positions into that array. Nothing is ever
+ * modified after construction, so any number of threads can read a snapshot without locking;
+ * a write produces the next version with {@link #withProducts}.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final long[] ids;
+    private final ProductView[] products;
+    private final Map<String, int[]> categoryPositions;
+    private volatile long contentFingerprint;
+
+    private CatalogSnapshot(long version, long[] ids, ProductView[] products) {
+        this.version = version;
+        this.ids = ids;
+        this.products = products;
+        this.categoryPositions = indexCategories(products);
+    }
+
+    /**
+     * @param products any order; the version should differ from every version served before
+     */
+    public static CatalogSnapshot of(long version, Collection<ProductView> products) {
+        ProductView[] sorted = products.toArray(ProductView[]::new);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.id(), b.id()));
+        long[] ids = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = sorted[i].id();
+        }
+        return new CatalogSnapshot(version, ids, sorted);
+    }
+
+    /**
+     * The next version, with the given products added or replacing the ones with the same id.
+     * Copies the arrays once, so a write costs O(catalog size) and readers never see it half done.
+     */
+    public CatalogSnapshot withProducts(Collection<ProductView> changed) {
+        TreeMap<Long, ProductView> updates = new TreeMap<>();
+        changed.forEach(product -> updates.put(product.id(), product));
+        List<ProductView> merged = new ArrayList<>(products.length + updates.size());
+        int next = 0;
+        for (ProductView update : updates.values()) {
+            while (next < products.length && ids[next] < update.id()) {
+                merged.add(products[next++]);
+            }
+            if (next < products.length && ids[next] == update.id()) {
+                next++;
+            }
+            merged.add(update);
+        }
+        while (next < products.length) {
+            merged.add(products[next++]);
+        }
+        ProductView[] mergedArray = merged.toArray(ProductView[]::new);
+        long[] mergedIds = new long[mergedArray.length];
+        for (int i = 0; i < mergedArray.length; i++) {
+            mergedIds[i] = mergedArray[i].id();
+        }
+        return new CatalogSnapshot(version + 1, mergedIds, mergedArray);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Strong entity tag for responses rendered from this version.
+     */
+    public String etag() {
+        return "\"" + version + "\"";
+    }
+
+    public int size() {
+        return products.length;
+    }
+
+    /**
+     * Hash of every product's id and searchable text (name, description, category, brand and
+     * tags). Unlike {@link #version()} it only depends on the content, so it tells whether an
+     * index persisted by an earlier process still matches this catalog. Prices and stock are left
+     * out because no text index depends on them.
+     */
+    public long contentFingerprint() {
+        long fingerprint = contentFingerprint;
+        if (fingerprint == 0) {
+            fingerprint = 0xcbf29ce484222325L;
+            for (ProductView product : products) {
+                fingerprint = mix(fingerprint, Long.hashCode(product.id()));
+                fingerprint = mix(fingerprint, Objects.hashCode(product.name()));
+                fingerprint = mix(fingerprint, Objects.hashCode(product.description()));
+                fingerprint = mix(fingerprint, Objects.hashCode(product.category()));
+                fingerprint = mix(fingerprint, Objects.hashCode(product.brand()));
+                fingerprint = mix(fingerprint, product.tags().hashCode());
+            }
+            contentFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    public Optional<ProductView> get(long id) {
+        int position = Arrays.binarySearch(ids, id);
+        return position < 0 ? Optional.empty() : Optional.of(products[position]);
+    }
+
+    /**
+     * The products with the given ids that exist, in the order of {@code orderedIds}.
+     */
+    public List<ProductView> getAll(List<Long> orderedIds) {
+        List<ProductView> found = new ArrayList<>(orderedIds.size());
+        for (Long id : orderedIds) {
+            int position = Arrays.binarySearch(ids, id);
+            if (position >= 0) {
+                found.add(products[position]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Every product in id order, as a read-only view over the snapshot.
+     */
+    public List<ProductView> all() {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    /**
+     * Products whose category equals {@code category} exactly, in id order.
+     */
+    public List<ProductView> byCategory(String category) {
+        int[] positions = categoryPositions.get(category);
+        if (positions == null) {
+            return List.of();
+        }
+        return new AbstractList<>() {
+            @Override
+            public ProductView get(int index) {
+                return products[positions[index]];
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+
+    /**
+     * Every category with at least one product.
+     */
+    public Set<String> categories() {
+        return Collections.unmodifiableSet(categoryPositions.keySet());
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    private static Map<String, int[]> indexCategories(ProductView[] products) {
+        Map<String, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < products.length; i++) {
+            if (products[i].category() != null) {
+                grouped.computeIfAbsent(products[i].category(), category -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> positions = new HashMap<>();
+        grouped.forEach((category, indexes) ->
+                positions.put(category, indexes.stream().mapToInt(Integer::intValue).toArray()));
+        return positions;
+    }
+}
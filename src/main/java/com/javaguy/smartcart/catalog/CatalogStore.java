@@ -0,0 +1,122 @@
+package com.javaguy.smartcart.catalog;
+
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.event.StockChangedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the current {@link CatalogSnapshot}. Readers take the volatile reference and never
+ * touch the database; product saves (announced with {@link ProductsSavedEvent}) are applied
+ * copy-on-write, one new version per event, with writers serialized among themselves.
+ *
+ * Versions start from the wall clock when the catalog is first loaded, so an entity tag handed
+ * out before a restart is not mistaken for one of the new process.
+ *
+ * Stock moves all the time, and a new version per write-behind flush would invalidate every
+ * entity tag every second. A stock change therefore only makes a new version when a product
+ * goes in or out of stock; other stock counts wait for the next version. Product responses can
+ * show an older count, but never the wrong availability; the live count is served by the
+ * inventory endpoints.
+ */
+@Component
+public class CatalogStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogStore.class);
+
+    private final ProductRepository productRepository;
+    private volatile CatalogSnapshot current;
+    // stock written since the current version that did not change whether a product is in stock
+    private final Map<Long, Integer> unpublishedStock = new HashMap<>();
+
+    public CatalogStore(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void load() {
+        long startTime = System.currentTimeMillis();
+        List<ProductView> products = productRepository.findAllWithTags().stream().map(ProductView::from).toList();
+        current = CatalogSnapshot.of(System.currentTimeMillis(), products);
+        unpublishedStock.clear();
+        log.info("Catalog snapshot {} loaded in {}ms with {} products",
+                current.version(), System.currentTimeMillis() - startTime, products.size());
+    }
+
+    /**
+     * Runs inside the saving transaction, while the products' tags can still be read.
+     */
+    @EventListener
+    public synchronized void onProductsSaved(ProductsSavedEvent event) {
+        if (current == null) {
+            // not loaded yet; the initial load reads these products from the database
+            return;
+        }
+        List<ProductView> saved = event.products().stream().map(ProductView::from).toList();
+        current = current.withProducts(withUnpublishedStock(saved));
+        log.debug("Catalog snapshot {} with {} changed products", current.version(), event.products().size());
+    }
+
+    /**
+     * Stock moves in coalesced batches from the inventory's write-behind; a batch in which a
+     * product goes in or out of stock makes one new version, with every count held back so far.
+     */
+    @EventListener
+    public synchronized void onStockChanged(StockChangedEvent event) {
+        if (current == null) {
+            return;
+        }
+        unpublishedStock.putAll(event.stockOnHand());
+        boolean availabilityChanged = event.stockOnHand().entrySet().stream()
+                .anyMatch(stock -> current.get(stock.getKey())
+                        .map(product -> inStock(product.stockQuantity()) != inStock(stock.getValue()))
+                        .orElse(false));
+        if (availabilityChanged) {
+            current = current.withProducts(withUnpublishedStock(List.of()));
+            log.debug("Catalog snapshot {} after a change in availability", current.version());
+        }
+    }
+
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot snapshot = current;
+        if (snapshot == null) {
+            // a request arrived before the application was ready
+            load();
+            snapshot = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * The saved products and every other product with held-back stock. Held-back stock was
+     * written by the inventory, which owns stock levels, so it also wins over the stock a saved
+     * product carries. Clears the held-back stock.
+     */
+    private List<ProductView> withUnpublishedStock(List<ProductView> saved) {
+        List<ProductView> changed = new ArrayList<>();
+        for (ProductView product : saved) {
+            Integer onHand = unpublishedStock.remove(product.id());
+            changed.add(onHand == null ? product : product.withStockQuantity(onHand));
+        }
+        unpublishedStock.forEach((productId, onHand) ->
+                current.get(productId).ifPresent(product -> changed.add(product.withStockQuantity(onHand))));
+        unpublishedStock.clear();
+        return changed;
+    }
+
+    private static boolean inStock(Integer onHand) {
+        return onHand != null && onHand > 0;
+    }
+}
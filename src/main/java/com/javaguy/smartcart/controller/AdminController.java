@@ -0,0 +1,129 @@
+package com.javaguy.smartcart.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaguy.smartcart.dto.QueryRewriteReview;
+import com.javaguy.smartcart.entity.QueryRewrite;
+import com.javaguy.smartcart.llm.AiRequestLimiter;
+import com.javaguy.smartcart.llm.ChatGateway;
+import com.javaguy.smartcart.llm.LlmResponseCache;
+import com.javaguy.smartcart.search.QueryRewriteDictionary;
+import com.javaguy.smartcart.search.QueryRewriteRules;
+import com.javaguy.smartcart.search.TextAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    private final LlmResponseCache llmResponseCache;
+    private final ChatGateway chatGateway;
+    private final AiRequestLimiter aiRequestLimiter;
+    private final QueryRewriteDictionary queryRewriteDictionary;
+    private final ObjectMapper objectMapper;
+
+    public AdminController(LlmResponseCache llmResponseCache, ChatGateway chatGateway, AiRequestLimiter aiRequestLimiter,
+                           QueryRewriteDictionary queryRewriteDictionary, ObjectMapper objectMapper) {
+        this.llmResponseCache = llmResponseCache;
+        this.chatGateway = chatGateway;
+        this.aiRequestLimiter = aiRequestLimiter;
+        this.queryRewriteDictionary = queryRewriteDictionary;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("/llm-calls")
+    public ChatGateway.Stats getLlmCallStats() {
+        return chatGateway.stats();
+    }
+
+    @GetMapping("/ai-requests")
+    public AiRequestLimiter.Stats getAiRequestStats() {
+        return aiRequestLimiter.stats();
+    }
+
+    @GetMapping("/llm-cache")
+    public LlmResponseCache.Stats getLlmCacheStats() {
+        return llmResponseCache.stats();
+    }
+
+    @DeleteMapping("/llm-cache")
+    public ResponseEntity<Map<String, Integer>> invalidateLlmCache(@RequestParam(required = false) String query) {
+        if (query == null) {
+            llmResponseCache.invalidateAll();
+            return ResponseEntity.noContent().build();
+        }
+        int removed = llmResponseCache.invalidate(String.join(" ", TextAnalyzer.tokenize(query)));
+        logger.info("Invalidated {} cached LLM responses for query: '{}'", removed, query);
+        return ResponseEntity.ok(Map.of("removed", removed));
+    }
+
+    /**
+     * Learned and reviewed query rewrites for review, the most used first.
+     */
+    @GetMapping("/query-rewrites")
+    public List<QueryRewriteRules.Rule> getQueryRewrites(@RequestParam(required = false) QueryRewrite.Status status) {
+        return queryRewriteDictionary.all().stream()
+                .filter(rule -> status == null || rule.status() == status)
+                .toList();
+    }
+
+    /**
+     * Every rule as one JSON object per line, for versioning or moving the dictionary elsewhere.
+     */
+    @GetMapping(value = "/query-rewrites/export", produces = "application/x-ndjson")
+    public ResponseEntity<String> exportQueryRewrites() throws JsonProcessingException {
+        StringBuilder body = new StringBuilder();
+        for (QueryRewriteRules.Rule rule : queryRewriteDictionary.all()) {
+            body.append(objectMapper.writeValueAsString(rule)).append('\n');
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"query-rewrites.ndjson\"")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body.toString());
+    }
+
+    /**
+     * Approves or rejects the rewrite for a query, optionally replacing it; with a rewrite this
+     * also adds a rule for a query that has none.
+     */
+    @PutMapping("/query-rewrites")
+    public ResponseEntity<QueryRewriteRules.Rule> reviewQueryRewrite(@RequestParam String query,
+                                                                     @RequestBody QueryRewriteReview review) {
+        if (review.status() == null
+                || QueryRewriteRules.key(query).length() > QueryRewriteRules.MAX_QUERY_LENGTH
+                || (review.rewrite() != null && review.rewrite().length() > QueryRewriteRules.MAX_REWRITE_LENGTH)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return queryRewriteDictionary.review(query, review.status(), review.rewrite())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/query-rewrites")
+    public ResponseEntity<Void> deleteQueryRewrite(@RequestParam String query) {
+        return queryRewriteDictionary.remove(query)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Drops learned rules that rarely find products or have not been used for a while;
+     * {@code unusedFor} takes the same formats as the duration settings, such as 30d or PT12H.
+     */
+    @PostMapping("/query-rewrites/prune")
+    public Map<String, Integer> pruneQueryRewrites(@RequestParam(defaultValue = "0.5") double minConfidence,
+                                                   @RequestParam(defaultValue = "30d") String unusedFor) {
+        return Map.of("removed", queryRewriteDictionary.prune(minConfidence, DurationStyle.detectAndParse(unusedFor)));
+    }
+}
@@ -1,7 +1,11 @@
 package com.javaguy.smartcart.controller;
 
+import com.javaguy.smartcart.dto.CustomerView;
 import com.javaguy.smartcart.entity.Customer;
+import com.javaguy.smartcart.event.CustomerProfileChangedEvent;
 import com.javaguy.smartcart.repository.CustomerRepository;
+import com.javaguy.smartcart.service.CustomerQueryService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -12,19 +16,24 @@ import java.util.List;
 public class CustomerController {
 
     private final CustomerRepository customerRepository;
+    private final CustomerQueryService customerQueryService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public CustomerController(CustomerRepository customerRepository) {
+    public CustomerController(CustomerRepository customerRepository, CustomerQueryService customerQueryService,
+                              ApplicationEventPublisher eventPublisher) {
         this.customerRepository = customerRepository;
+        this.customerQueryService = customerQueryService;
+        this.eventPublisher = eventPublisher;
     }
 
     @GetMapping
-    public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+    public List<CustomerView> getAllCustomers() {
+        return customerQueryService.findAll();
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Customer> getCustomer(@PathVariable Long id) {
-        return customerRepository.findById(id)
+    public ResponseEntity<CustomerView> getCustomer(@PathVariable Long id) {
+        return customerQueryService.findById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -34,7 +43,9 @@ public class CustomerController {
         if (customerRepository.findByEmail(customer.getEmail()).isPresent()) {
             throw new IllegalArgumentException("Email address already in use");
         }
-        return customerRepository.save(customer);
+        Customer savedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(new CustomerProfileChangedEvent(savedCustomer.getId()));
+        return savedCustomer;
     }
 
     @PutMapping("/{id}/preferences")
@@ -45,7 +56,9 @@ public class CustomerController {
         return customerRepository.findById(id)
                 .map(customer -> {
                     customer.setPreferences(preferences);
-                    return ResponseEntity.ok(customerRepository.save(customer));
+                    Customer savedCustomer = customerRepository.save(customer);
+                    eventPublisher.publishEvent(new CustomerProfileChangedEvent(id));
+                    return ResponseEntity.ok(savedCustomer);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
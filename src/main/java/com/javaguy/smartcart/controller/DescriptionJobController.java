@@ -0,0 +1,64 @@
+package com.javaguy.smartcart.controller;
+
+import com.javaguy.smartcart.dto.DescriptionJobRequest;
+import com.javaguy.smartcart.dto.DescriptionJobStatus;
+import com.javaguy.smartcart.service.DescriptionJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/jobs/descriptions")
+@CrossOrigin(origins = "*")
+public class DescriptionJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptionJobController.class);
+
+    private final DescriptionJobService descriptionJobService;
+
+    public DescriptionJobController(DescriptionJobService descriptionJobService) {
+        this.descriptionJobService = descriptionJobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<DescriptionJobStatus> submitJob(@RequestBody DescriptionJobRequest request) {
+        logger.info("Submitting description job for {} product ids and category: {}",
+                request.productIds() == null ? 0 : request.productIds().size(), request.category());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(descriptionJobService.submit(request));
+    }
+
+    @GetMapping
+    public List<DescriptionJobStatus> getJobs() {
+        return descriptionJobService.allStatuses();
+    }
+
+    @GetMapping("/{id}")
+    public DescriptionJobStatus getJob(@PathVariable Long id) {
+        return descriptionJobService.status(id);
+    }
+
+    @PostMapping("/{id}/pause")
+    public DescriptionJobStatus pauseJob(@PathVariable Long id) {
+        return descriptionJobService.pause(id);
+    }
+
+    @PostMapping("/{id}/resume")
+    public DescriptionJobStatus resumeJob(@PathVariable Long id) {
+        return descriptionJobService.resume(id);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<String> handleUnknownJob(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidJob(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -0,0 +1,93 @@
+package com.javaguy.smartcart.controller;
+
+import com.javaguy.smartcart.dto.Order;
+import com.javaguy.smartcart.dto.Reservation;
+import com.javaguy.smartcart.dto.ReservationRequest;
+import com.javaguy.smartcart.inventory.InsufficientStockException;
+import com.javaguy.smartcart.service.InventoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/inventory")
+@CrossOrigin(origins = "*")
+public class InventoryController {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryController.class);
+
+    private final InventoryService inventoryService;
+
+    public InventoryController(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+    }
+
+    /**
+     * Units that can still be reserved, which excludes units held by open reservations.
+     */
+    @GetMapping("/{productId}")
+    public ResponseEntity<Map<String, Object>> getAvailability(@PathVariable Long productId) {
+        OptionalInt available = inventoryService.available(productId);
+        if (available.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("productId", productId, "available", available.getAsInt()));
+    }
+
+    @PostMapping("/reservations")
+    public ResponseEntity<Reservation> reserve(@RequestBody ReservationRequest request) {
+        Reservation reservation = inventoryService.reserve(request);
+        logger.info("Reservation {} for customer {}: {}", reservation.id(), request.customerId(), request.items());
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+    }
+
+    @PostMapping("/reservations/{id}/checkout")
+    public ResponseEntity<Order> checkoutReservation(@PathVariable UUID id) {
+        return inventoryService.checkout(id)
+                .map(order -> {
+                    logger.info("Reservation {} checked out by customer {}", id, order.customerId());
+                    return ResponseEntity.ok(order);
+                })
+                .orElseGet(() -> {
+                    logger.warn("Reservation {} not found or expired", id);
+                    return ResponseEntity.notFound().build();
+                });
+    }
+
+    @DeleteMapping("/reservations/{id}")
+    public ResponseEntity<Void> releaseReservation(@PathVariable UUID id) {
+        return inventoryService.release(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Reserves and buys in one step, for clients that do not hold a cart.
+     */
+    @PostMapping("/checkout")
+    public Order checkout(@RequestBody ReservationRequest request) {
+        Order order = inventoryService.checkout(request);
+        logger.info("Order {} placed by customer {}: {}", order.id(), order.customerId(), order.items());
+        return order;
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String, Object>> handleInsufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "message", e.getMessage(),
+                "productId", e.getProductId(),
+                "requested", e.getRequested(),
+                "available", e.getAvailable()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidOrder(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -1,15 +1,50 @@
 package com.javaguy.smartcart.controller;
 
 
+import com.javaguy.smartcart.catalog.CatalogSnapshot;
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.FacetFilter;
+import com.javaguy.smartcart.dto.FacetedProducts;
+import com.javaguy.smartcart.dto.ProductImportProgress;
+import com.javaguy.smartcart.dto.ProductView;
 import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.llm.AiRequestLimiter;
+import com.javaguy.smartcart.llm.AiRequestRejectedException;
+import com.javaguy.smartcart.llm.LlmUnavailableException;
+import com.javaguy.smartcart.recommendation.CoPurchaseRecommender;
 import com.javaguy.smartcart.repository.ProductRepository;
 import com.javaguy.smartcart.service.AIRecommendationService;
 import com.javaguy.smartcart.service.AISearchService;
+import com.javaguy.smartcart.service.FacetedSearchService;
+import com.javaguy.smartcart.service.ProductImportService;
+import com.javaguy.smartcart.service.RecommendationMaterializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/products")
@@ -19,80 +54,236 @@ public class ProductController {
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
 
     private final ProductRepository productRepository;
+    private final CatalogStore catalogStore;
     private final AIRecommendationService aiRecommendationService;
     private final AISearchService aiSearchService;
+    private final FacetedSearchService facetedSearchService;
+    private final RecommendationMaterializer recommendationMaterializer;
+    private final CoPurchaseRecommender coPurchaseRecommender;
+    private final ProductImportService productImportService;
+    private final AiRequestLimiter aiRequestLimiter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
 
     public ProductController(ProductRepository productRepository,
+                             CatalogStore catalogStore,
                              AIRecommendationService aiRecommendationService,
-                             AISearchService aiSearchService) {
+                             AISearchService aiSearchService,
+                             FacetedSearchService facetedSearchService,
+                             RecommendationMaterializer recommendationMaterializer,
+                             CoPurchaseRecommender coPurchaseRecommender,
+                             ProductImportService productImportService,
+                             AiRequestLimiter aiRequestLimiter,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectMapper objectMapper) {
         this.productRepository = productRepository;
+        this.catalogStore = catalogStore;
         this.aiRecommendationService = aiRecommendationService;
         this.aiSearchService = aiSearchService;
+        this.facetedSearchService = facetedSearchService;
+        this.recommendationMaterializer = recommendationMaterializer;
+        this.coPurchaseRecommender = coPurchaseRecommender;
+        this.productImportService = productImportService;
+        this.aiRequestLimiter = aiRequestLimiter;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
         logger.info("ProductController initialized with AI services");
     }
 
+    /**
+     * Catalog reads are served from the in-memory snapshot and tagged with its version, so a
+     * client repeating a request with {@code If-None-Match} gets a 304 until a product changes.
+     */
     @GetMapping
-    public List<Product> getAllProducts() {
+    public ResponseEntity<List<ProductView>> getAllProducts(WebRequest request) {
         logger.info("Fetching all products");
-        List<Product> products = productRepository.findAll();
-        logger.info("Retrieved {} products", products.size());
-        return products;
+        return fromCatalog(request, catalog -> {
+            List<ProductView> products = catalog.all();
+            logger.info("Retrieved {} products", products.size());
+            return ResponseEntity.ok(products);
+        });
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProduct(@PathVariable Long id) {
+    public ResponseEntity<ProductView> getProduct(@PathVariable Long id, WebRequest request) {
         logger.info("Fetching product with ID: {}", id);
-        return productRepository.findById(id)
+        return fromCatalog(request, catalog -> catalog.get(id)
                 .map(product -> {
-                    logger.info("Found product: {}", product.getName());
+                    logger.info("Found product: {}", product.name());
                     return ResponseEntity.ok(product);
                 })
                 .orElseGet(() -> {
                     logger.warn("Product not found with ID: {}", id);
                     return ResponseEntity.notFound().build();
-                });
+                }));
+    }
+
+    /**
+     * Products most often bought by the same customers, from the co-purchase matrix.
+     */
+    @GetMapping("/{id}/also-bought")
+    public List<ProductView> getAlsoBought(@PathVariable Long id, @RequestParam(defaultValue = "5") int limit) {
+        logger.info("Fetching products bought together with product ID: {}", id);
+        List<ProductView> products = catalogStore.snapshot().getAll(coPurchaseRecommender.alsoBought(id, limit));
+        logger.info("Found {} products bought together with product ID: {}", products.size(), id);
+        return products;
     }
 
     @PostMapping
     public Product createProduct(@RequestBody Product product) {
         logger.info("Creating new product: {}", product.getName());
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductsSavedEvent.of(savedProduct));
         logger.info("Product created with ID: {}", savedProduct.getId());
         return savedProduct;
     }
 
+    /**
+     * Bulk import from an NDJSON or CSV request body, streamed in and written in batches. The
+     * response is NDJSON too: one progress line per committed batch, listing the rejected rows,
+     * and a last line with {@code "done":true}.
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"}, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> importProducts(HttpServletRequest request) throws IOException {
+        ProductImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? ProductImportService.Format.CSV : ProductImportService.Format.NDJSON;
+        logger.info("Importing products from {} input", format);
+        InputStream input = request.getInputStream();
+        StreamingResponseBody body = output -> productImportService.importProducts(input, format,
+                progress -> writeLine(output, progress));
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private void writeLine(OutputStream output, ProductImportProgress progress) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(progress));
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * May wait on the chat model, so it runs through the AI request limiter off the request thread.
+     */
     @GetMapping("/search")
-    public List<Product> searchProducts(@RequestParam String query) {
+    public CompletableFuture<List<ProductView>> searchProducts(@RequestParam String query) {
         logger.info("Searching products with query: '{}'", query);
+        return aiRequestLimiter.submit("search", () -> {
+            long startTime = System.currentTimeMillis();
+            List<ProductView> results = aiSearchService.intelligentSearch(query);
+            long endTime = System.currentTimeMillis();
+            logger.info("Search completed in {}ms, found {} products", (endTime - startTime), results.size());
+            return results;
+        });
+    }
+
+    /**
+     * Filters by any combination of facets (repeat a parameter to allow several values) and
+     * returns a page of products with per-facet counts; {@code query} narrows a search instead
+     * of the whole catalog. A search may wait on the chat model, so only that case goes through
+     * the AI request limiter; browsing is answered on the request thread.
+     */
+    @GetMapping("/facets")
+    public CompletableFuture<FacetedProducts> facetedSearch(@RequestParam(required = false) Set<String> category,
+                                                            @RequestParam(required = false) Set<String> brand,
+                                                            @RequestParam(required = false) Set<String> tag,
+                                                            @RequestParam(required = false) BigDecimal minPrice,
+                                                            @RequestParam(required = false) BigDecimal maxPrice,
+                                                            @RequestParam(defaultValue = "false") boolean inStock,
+                                                            @RequestParam(required = false) String query,
+                                                            @RequestParam(defaultValue = "0") int offset,
+                                                            @RequestParam(defaultValue = "20") int limit) {
+        logger.info("Faceted search: category={}, brand={}, tag={}, price={}..{}, inStock={}, query='{}'",
+                category, brand, tag, minPrice, maxPrice, inStock, query);
+        FacetFilter filter = new FacetFilter(category, brand, tag, minPrice, maxPrice, inStock);
+        if (query == null || query.isBlank()) {
+            return CompletableFuture.completedFuture(facetedSearch(filter, null, offset, limit));
+        }
+        return aiRequestLimiter.submit("facets", () -> facetedSearch(filter, query, offset, limit));
+    }
+
+    private FacetedProducts facetedSearch(FacetFilter filter, String query, int offset, int limit) {
         long startTime = System.currentTimeMillis();
-        List<Product> results = aiSearchService.intelligentSearch(query);
-        long endTime = System.currentTimeMillis();
-        logger.info("Search completed in {}ms, found {} products", (endTime - startTime), results.size());
+        FacetedProducts results = facetedSearchService.search(filter, query, offset, limit);
+        logger.info("Faceted search completed in {}ms, {} matches", (System.currentTimeMillis() - startTime), results.total());
         return results;
     }
 
+    /**
+     * Served from the materialized store; the headers tell clients when the recommendations
+     * were computed and whether a refresh is pending. A customer seen for the first time waits
+     * on the chat model, so this also goes through the AI request limiter.
+     */
     @GetMapping("/recommendations/{customerId}")
-    public List<Product> getRecommendations(@PathVariable Long customerId) {
+    public CompletableFuture<ResponseEntity<List<ProductView>>> getRecommendations(@PathVariable Long customerId) {
         logger.info("Fetching AI recommendations for customer ID: {}", customerId);
+        return aiRequestLimiter.submit("recommendations", () -> {
+            long startTime = System.currentTimeMillis();
+            RecommendationMaterializer.Materialized recommendations = recommendationMaterializer.getRecommendations(customerId);
+            long endTime = System.currentTimeMillis();
+            logger.info("Recommendations served in {}ms for customer: {}", (endTime - startTime), customerId);
+            return ResponseEntity.ok()
+                    .header("X-Recommendations-Computed-At", recommendations.computedAt().toString())
+                    .header("X-Recommendations-Stale", String.valueOf(recommendations.stale()))
+                    .body(recommendations.products());
+        });
+    }
+
+    /**
+     * Sends the recommended products as a single "products" event: co-purchase recommendations
+     * right away, the model's once it has answered. The model answers with a JSON list of product
+     * ids rather than text worth showing, so its output is not forwarded; the event stream keeps
+     * the request from holding a thread while the model generates.
+     */
+    @GetMapping(value = "/recommendations/{customerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<List<ProductView>>> streamRecommendations(@PathVariable Long customerId) {
+        logger.info("Streaming AI recommendations for customer ID: {}", customerId);
         long startTime = System.currentTimeMillis();
-        List<Product> recommendations = aiRecommendationService.getPersonalizedRecommendations(customerId);
-        long endTime = System.currentTimeMillis();
-        logger.info("Recommendations generated in {}ms for customer: {}", (endTime - startTime), customerId);
-        return recommendations;
+        return aiRecommendationService.streamPersonalizedRecommendations(customerId)
+                .onErrorResume(LlmUnavailableException.class, e -> {
+                    logger.warn("Streaming recommendations unavailable for customer {}: {}", customerId, e.getMessage());
+                    return Mono.fromCallable(() -> aiRecommendationService.fallbackRecommendations(customerId))
+                            .subscribeOn(Schedulers.boundedElastic());
+                })
+                .map(recommendations -> ServerSentEvent.builder(recommendations).event("products").build())
+                .flux()
+                .doOnComplete(() -> logger.info("Recommendations streamed in {}ms for customer: {}",
+                        (System.currentTimeMillis() - startTime), customerId));
     }
 
     @GetMapping("/category/{category}")
-    public List<Product> getProductsByCategory(@PathVariable String category) {
+    public ResponseEntity<List<ProductView>> getProductsByCategory(@PathVariable String category, WebRequest request) {
         logger.info("Fetching products for category: {}", category);
-        List<Product> products = productRepository.findByCategory(category);
-        logger.info("Found {} products in category: {}", products.size(), category);
-        return products;
+        return fromCatalog(request, catalog -> {
+            List<ProductView> products = catalog.byCategory(category);
+            logger.info("Found {} products in category: {}", products.size(), category);
+            return ResponseEntity.ok(products);
+        });
+    }
+
+    /**
+     * Renders the response from a single snapshot and tags it with that snapshot's version;
+     * answers 304 without building the body when the client already has this version.
+     */
+    private <T> ResponseEntity<T> fromCatalog(WebRequest request, Function<CatalogSnapshot, ResponseEntity<T>> render) {
+        CatalogSnapshot catalog = catalogStore.snapshot();
+        if (request.checkNotModified(catalog.etag())) {
+            logger.info("Catalog version {} not modified", catalog.version());
+            return null;
+        }
+        ResponseEntity<T> response = render.apply(catalog);
+        return ResponseEntity.status(response.getStatusCode())
+                .eTag(catalog.etag())
+                .body(response.getBody());
     }
 
     @PostMapping("/{id}/generate-description")
-    public ResponseEntity<String> generateDescription(@PathVariable Long id) {
+    public CompletableFuture<ResponseEntity<String>> generateDescription(@PathVariable Long id) {
         logger.info("Generating AI description for product ID: {}", id);
-        return productRepository.findById(id)
+        return aiRequestLimiter.submit("generate-description", () -> productRepository.findById(id)
                 .map(product -> {
                     logger.info("Generating description for product: {}", product.getName());
                     long startTime = System.currentTimeMillis();
@@ -104,6 +295,46 @@ public class ProductController {
                 .orElseGet(() -> {
                     logger.warn("Cannot generate description - product not found with ID: {}", id);
                     return ResponseEntity.notFound().build();
+                }));
+    }
+
+    @PostMapping(value = "/{id}/generate-description/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> streamDescription(@PathVariable Long id) {
+        logger.info("Streaming AI description for product ID: {}", id);
+        return productRepository.findById(id)
+                .map(product -> {
+                    long startTime = System.currentTimeMillis();
+                    Flux<ServerSentEvent<String>> tokens = aiRecommendationService.streamProductDescription(product)
+                            .map(token -> ServerSentEvent.builder(token).event("token").build())
+                            .onErrorResume(LlmUnavailableException.class, e -> Flux.just(
+                                    ServerSentEvent.builder(e.getMessage()).event("unavailable").build()))
+                            .doOnComplete(() -> logger.info("Description streamed in {}ms for product: {}",
+                                    (System.currentTimeMillis() - startTime), product.getName()));
+                    return ResponseEntity.ok(tokens);
+                })
+                .orElseGet(() -> {
+                    logger.warn("Cannot stream description - product not found with ID: {}", id);
+                    return ResponseEntity.notFound().build();
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * There is no fallback for generating a description; tell the client when to try again.
+     */
+    @ExceptionHandler(LlmUnavailableException.class)
+    public ResponseEntity<String> handleLlmUnavailable(LlmUnavailableException e) {
+        logger.warn("Chat model unavailable ({}): {}", e.getReason(), e.getMessage());
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(e.getRetryAfter().toMillis() / 1000.0));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(AiRequestRejectedException.class)
+    public ResponseEntity<String> handleAiRequestRejected(AiRequestRejectedException e) {
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(e.getRetryAfter().toMillis() / 1000.0));
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(e.getMessage());
+    }
+}
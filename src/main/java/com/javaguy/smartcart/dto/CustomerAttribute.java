@@ -0,0 +1,7 @@
+package com.javaguy.smartcart.dto;
+
+/**
+ * One element of a customer's element collection, projected together with the owner id so a
+ * whole collection table can be read in a single query.
+ */
+public record CustomerAttribute<T>(Long customerId, T value) {}
@@ -0,0 +1,24 @@
+package com.javaguy.smartcart.dto;
+
+import com.javaguy.smartcart.entity.Customer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read model of a customer, serialized exactly like the entity.
+ */
+public record CustomerView(Long id,
+                           String email,
+                           String firstName,
+                           String lastName,
+                           List<String> preferences,
+                           List<Long> purchaseHistory,
+                           LocalDateTime createdAt) {
+
+    public static CustomerView from(Customer customer) {
+        return new CustomerView(customer.getId(), customer.getEmail(), customer.getFirstName(), customer.getLastName(),
+                List.copyOf(customer.getPreferences()), List.copyOf(customer.getPurchaseHistory()),
+                customer.getCreatedAt());
+    }
+}
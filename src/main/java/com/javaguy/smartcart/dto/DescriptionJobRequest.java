@@ -0,0 +1,8 @@
+package com.javaguy.smartcart.dto;
+
+import java.util.List;
+
+/**
+ * Products to generate descriptions for: explicit ids, every product in a category, or both.
+ */
+public record DescriptionJobRequest(List<Long> productIds, String category) {}
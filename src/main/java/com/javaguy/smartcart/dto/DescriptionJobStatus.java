@@ -0,0 +1,21 @@
+package com.javaguy.smartcart.dto;
+
+import com.javaguy.smartcart.entity.DescriptionJob;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a description job. Throughput and ETA are only known while the job is running
+ * in this process and are null otherwise.
+ */
+public record DescriptionJobStatus(Long id,
+                                   DescriptionJob.Status status,
+                                   String category,
+                                   int total,
+                                   int processed,
+                                   int failed,
+                                   int pending,
+                                   Double throughputPerMinute,
+                                   Long etaSeconds,
+                                   LocalDateTime createdAt,
+                                   LocalDateTime finishedAt) {}
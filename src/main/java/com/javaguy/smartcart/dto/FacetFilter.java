@@ -0,0 +1,15 @@
+package com.javaguy.smartcart.dto;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * Facet selection: values of the same facet are alternatives, different facets must all match.
+ * Empty sets and null prices leave that facet unrestricted.
+ */
+public record FacetFilter(Set<String> categories,
+                          Set<String> brands,
+                          Set<String> tags,
+                          BigDecimal minPrice,
+                          BigDecimal maxPrice,
+                          boolean inStockOnly) {}
@@ -0,0 +1,13 @@
+package com.javaguy.smartcart.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of products matching a {@link FacetFilter}, the total number of matches and, per
+ * facet, the product counts of its most frequent values.
+ */
+public record FacetedProducts(long total,
+                              int offset,
+                              List<ProductView> products,
+                              Map<String, Map<String, Integer>> facets) {}
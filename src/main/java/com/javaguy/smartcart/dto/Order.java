@@ -0,0 +1,11 @@
+package com.javaguy.smartcart.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A completed checkout. Stock is already taken; the purchase reaches the customer's history
+ * with the next write-behind flush.
+ */
+public record Order(UUID id, Long customerId, List<OrderLine> items, Instant placedAt) {}
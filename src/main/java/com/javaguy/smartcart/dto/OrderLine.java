@@ -0,0 +1,3 @@
+package com.javaguy.smartcart.dto;
+
+public record OrderLine(Long productId, int quantity) {}
@@ -0,0 +1,22 @@
+package com.javaguy.smartcart.dto;
+
+import java.util.List;
+
+/**
+ * Written after each committed batch of a bulk import, and once more with {@code done} set when
+ * the input is exhausted. {@code rejectedRows} lists the rows rejected since the previous line,
+ * up to the configured reporting limit; {@code totalRejected} counts all of them.
+ */
+public record ProductImportProgress(int batch,
+                                    int imported,
+                                    long totalImported,
+                                    long totalRejected,
+                                    long elapsedMillis,
+                                    boolean done,
+                                    List<RejectedRow> rejectedRows) {
+
+    /**
+     * @param line 1-based line of the input, counting the CSV header
+     */
+    public record RejectedRow(long line, String reason) {}
+}
@@ -0,0 +1,30 @@
+package com.javaguy.smartcart.dto;
+
+import com.javaguy.smartcart.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One product of a bulk import, as read from an NDJSON line or a CSV record.
+ */
+public record ProductImportRow(String name,
+                               String description,
+                               BigDecimal price,
+                               String category,
+                               String brand,
+                               Integer stockQuantity,
+                               String imageUrl,
+                               List<String> tags) {
+
+    public Product toProduct() {
+        Product product = new Product(name, description, price, category, brand);
+        product.setStockQuantity(stockQuantity);
+        product.setImageUrl(imageUrl);
+        product.setCreatedAt(LocalDateTime.now());
+        product.setTags(tags == null ? new ArrayList<>() : new ArrayList<>(tags));
+        return product;
+    }
+}
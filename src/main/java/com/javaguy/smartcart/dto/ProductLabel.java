@@ -0,0 +1,6 @@
+package com.javaguy.smartcart.dto;
+
+/**
+ * The parts of a product that LLM output is matched against.
+ */
+public record ProductLabel(Long id, String name, String category) {}
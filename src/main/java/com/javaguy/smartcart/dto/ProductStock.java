@@ -0,0 +1,3 @@
+package com.javaguy.smartcart.dto;
+
+public record ProductStock(Long productId, Integer stockQuantity) {}
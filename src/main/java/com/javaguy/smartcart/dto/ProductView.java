@@ -0,0 +1,33 @@
+package com.javaguy.smartcart.dto;
+
+import com.javaguy.smartcart.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read model of a product, serialized exactly like the entity but detached from the
+ * persistence context so rendering it can never trigger lazy loading.
+ */
+public record ProductView(Long id,
+                          String name,
+                          String description,
+                          BigDecimal price,
+                          String category,
+                          String brand,
+                          Integer stockQuantity,
+                          String imageUrl,
+                          LocalDateTime createdAt,
+                          List<String> tags) {
+
+    public static ProductView from(Product product) {
+        return new ProductView(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                product.getCategory(), product.getBrand(), product.getStockQuantity(), product.getImageUrl(),
+                product.getCreatedAt(), product.getTags() == null ? List.of() : List.copyOf(product.getTags()));
+    }
+
+    public ProductView withStockQuantity(Integer stockQuantity) {
+        return new ProductView(id, name, description, price, category, brand, stockQuantity, imageUrl, createdAt, tags);
+    }
+}
@@ -0,0 +1,8 @@
+package com.javaguy.smartcart.dto;
+
+import com.javaguy.smartcart.entity.QueryRewrite;
+
+/**
+ * An operator's verdict on a query rewrite; a null rewrite keeps the current one.
+ */
+public record QueryRewriteReview(QueryRewrite.Status status, String rewrite) {}
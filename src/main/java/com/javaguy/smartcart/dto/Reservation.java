@@ -0,0 +1,10 @@
+package com.javaguy.smartcart.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Units held for a customer until they check out, release them or {@code expiresAt} passes.
+ */
+public record Reservation(UUID id, Long customerId, List<OrderLine> items, Instant expiresAt) {}
@@ -0,0 +1,8 @@
+package com.javaguy.smartcart.dto;
+
+import java.util.List;
+
+/**
+ * Units a customer wants to reserve or buy straight away.
+ */
+public record ReservationRequest(Long customerId, List<OrderLine> items) {}
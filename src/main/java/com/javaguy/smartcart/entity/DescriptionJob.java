@@ -0,0 +1,78 @@
+package com.javaguy.smartcart.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A bulk description generation job. The set of pending product ids is the checkpoint:
+ * ids are removed in the same transaction that writes their descriptions, so a paused or
+ * interrupted job resumes exactly where it stopped.
+ */
+@Entity
+@Table(name = "description_jobs")
+public class DescriptionJob {
+
+    public enum Status { RUNNING, PAUSED, COMPLETED, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private String category;
+    private int totalCount;
+    private int processedCount;
+    private int failedCount;
+
+    @ElementCollection
+    @CollectionTable(name = "description_job_pending", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "product_id")
+    private Set<Long> pendingProductIds = new HashSet<>();
+
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    // Constructors
+    public DescriptionJob() {}
+
+    public DescriptionJob(String category, Set<Long> productIds) {
+        this.category = category;
+        this.pendingProductIds = new HashSet<>(productIds);
+        this.totalCount = productIds.size();
+        this.status = Status.RUNNING;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public int getTotalCount() { return totalCount; }
+    public void setTotalCount(int totalCount) { this.totalCount = totalCount; }
+
+    public int getProcessedCount() { return processedCount; }
+    public void setProcessedCount(int processedCount) { this.processedCount = processedCount; }
+
+    public int getFailedCount() { return failedCount; }
+    public void setFailedCount(int failedCount) { this.failedCount = failedCount; }
+
+    public Set<Long> getPendingProductIds() { return pendingProductIds; }
+    public void setPendingProductIds(Set<Long> pendingProductIds) { this.pendingProductIds = pendingProductIds; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -14,8 +14,10 @@ import java.util.List;
 @Entity
 @Table(name = "products")
 public class Product {
+    // a pooled sequence rather than IDENTITY, so Hibernate can batch inserts; ids are handed out 50 at a time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -30,6 +32,9 @@ public class Product {
 
     private String category;
     private String brand;
+    // owned by the inventory's StockLedger once the product exists; saving the entity must not
+    // overwrite what its write-behind stored
+    @Column(updatable = false)
     private Integer stockQuantity;
     private String imageUrl;
 
@@ -0,0 +1,68 @@
+package com.javaguy.smartcart.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A query rewrite learned from the chat model's keyword suggestions, or entered by an operator.
+ * The query is stored normalized (distinct lowercase tokens in sorted order), so word order and
+ * case variants of one intent share a row.
+ */
+@Entity
+@Table(name = "query_rewrites")
+public class QueryRewrite {
+
+    public enum Status { LEARNED, APPROVED, REJECTED }
+
+    @Id
+    @Column(name = "query_key", length = 500)
+    private String query;
+
+    @Column(length = 1000)
+    private String rewrite;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int successCount;
+    private int failureCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastUsedAt;
+
+    // Constructors
+    public QueryRewrite() {}
+
+    public QueryRewrite(String query, String rewrite, Status status, int successCount, int failureCount,
+                        LocalDateTime createdAt, LocalDateTime lastUsedAt) {
+        this.query = query;
+        this.rewrite = rewrite;
+        this.status = status;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.createdAt = createdAt;
+        this.lastUsedAt = lastUsedAt;
+    }
+
+    // Getters and Setters
+    public String getQuery() { return query; }
+    public void setQuery(String query) { this.query = query; }
+
+    public String getRewrite() { return rewrite; }
+    public void setRewrite(String rewrite) { this.rewrite = rewrite; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getSuccessCount() { return successCount; }
+    public void setSuccessCount(int successCount) { this.successCount = successCount; }
+
+    public int getFailureCount() { return failureCount; }
+    public void setFailureCount(int failureCount) { this.failureCount = failureCount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getLastUsedAt() { return lastUsedAt; }
+    public void setLastUsedAt(LocalDateTime lastUsedAt) { this.lastUsedAt = lastUsedAt; }
+}
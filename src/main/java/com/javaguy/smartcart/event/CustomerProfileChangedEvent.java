@@ -0,0 +1,7 @@
+package com.javaguy.smartcart.event;
+
+/**
+ * Published when a customer's preferences or purchase history change, which invalidates
+ * anything derived from their profile such as materialized recommendations.
+ */
+public record CustomerProfileChangedEvent(long customerId) {}
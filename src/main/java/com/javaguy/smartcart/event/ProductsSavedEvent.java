@@ -0,0 +1,16 @@
+package com.javaguy.smartcart.event;
+
+import com.javaguy.smartcart.entity.Product;
+
+import java.util.List;
+
+/**
+ * Published after one or more products have been written to the database so that
+ * in-memory structures over the catalog (search indexes etc.) can update incrementally.
+ */
+public record ProductsSavedEvent(List<Product> products) {
+
+    public static ProductsSavedEvent of(Product product) {
+        return new ProductsSavedEvent(List.of(product));
+    }
+}
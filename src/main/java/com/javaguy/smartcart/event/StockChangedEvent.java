@@ -0,0 +1,9 @@
+package com.javaguy.smartcart.event;
+
+import java.util.Map;
+
+/**
+ * Published after the inventory's write-behind has stored new stock levels, product id to
+ * units on hand, so read models over the catalog can show them.
+ */
+public record StockChangedEvent(Map<Long, Integer> stockOnHand) {}
@@ -0,0 +1,31 @@
+package com.javaguy.smartcart.inventory;
+
+/**
+ * Thrown when a reservation or checkout asks for more units of a product than are available.
+ * Nothing was reserved: units already taken for other lines of the same request are released.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final long productId;
+    private final int requested;
+    private final int available;
+
+    public InsufficientStockException(long productId, int requested, int available) {
+        super("Only " + available + " units of product " + productId + " available, " + requested + " requested");
+        this.productId = productId;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,145 @@
+package com.javaguy.smartcart.inventory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stock counters, the source of truth for reserve and release decisions. Each product
+ * has an {@code available} counter, decremented with a compare-and-set loop that refuses to go
+ * below zero, so concurrent reservations never oversell and never block: a losing thread just
+ * retries against the new value. Reserved units move to a {@code held} counter until they are
+ * sold or released.
+ *
+ * The stock on hand ({@code available + held}) of every product touched since the last
+ * {@link #drainChanges()} is handed out once per drain, however many reservations there were,
+ * which is what lets the database writes be coalesced.
+ */
+public class StockLedger {
+
+    private static final class Stock {
+        final long productId;
+        final AtomicInteger available;
+        final AtomicInteger held = new AtomicInteger();
+        final AtomicBoolean changed = new AtomicBoolean();
+
+        Stock(long productId, int available) {
+            this.productId = productId;
+            this.available = new AtomicInteger(available);
+        }
+    }
+
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Stock> changed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts tracking the product with the given stock on hand; a product already tracked keeps
+     * its counters, which are newer than anything read from the database.
+     */
+    public void track(long productId, int onHand) {
+        stocks.putIfAbsent(productId, new Stock(productId, Math.max(0, onHand)));
+    }
+
+    public boolean isTracked(long productId) {
+        return stocks.containsKey(productId);
+    }
+
+    /**
+     * Units that can still be reserved, or empty for an unknown product.
+     */
+    public OptionalInt available(long productId) {
+        Stock stock = stocks.get(productId);
+        return stock == null ? OptionalInt.empty() : OptionalInt.of(stock.available.get());
+    }
+
+    /**
+     * Moves {@code quantity} units from available to held, or returns false, changing nothing,
+     * when fewer are available or the product is unknown.
+     */
+    public boolean reserve(long productId, int quantity) {
+        Stock stock = stocks.get(productId);
+        if (stock == null || quantity <= 0) {
+            return false;
+        }
+        int current;
+        do {
+            current = stock.available.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!stock.available.compareAndSet(current, current - quantity));
+        stock.held.addAndGet(quantity);
+        markChanged(stock);
+        return true;
+    }
+
+    /**
+     * Returns held units to available, for an abandoned or expired reservation.
+     */
+    public void release(long productId, int quantity) {
+        Stock stock = stocks.get(productId);
+        if (stock == null) {
+            return;
+        }
+        // held first: a concurrent drain may then see the units in neither counter, never in both
+        stock.held.addAndGet(-quantity);
+        stock.available.addAndGet(quantity);
+        markChanged(stock);
+    }
+
+    /**
+     * Removes held units from stock for good, once they are sold.
+     */
+    public void commit(long productId, int quantity) {
+        Stock stock = stocks.get(productId);
+        if (stock == null) {
+            return;
+        }
+        stock.held.addAndGet(-quantity);
+        markChanged(stock);
+    }
+
+    /**
+     * The stock on hand of each product changed since the last call. A change racing with the
+     * drain is reported now or on the next call; a racing value may be too low, never too high,
+     * and is corrected by that next call.
+     */
+    public Map<Long, Integer> drainChanges() {
+        Map<Long, Integer> onHand = new LinkedHashMap<>();
+        Stock stock;
+        while ((stock = changed.poll()) != null) {
+            stock.changed.set(false);
+            int held = stock.held.get();
+            onHand.put(stock.productId, held + stock.available.get());
+        }
+        return onHand;
+    }
+
+    /**
+     * Reports the products again on the next {@link #drainChanges()}, after a failed write.
+     */
+    public void markChanged(Collection<Long> productIds) {
+        productIds.forEach(productId -> {
+            Stock stock = stocks.get(productId);
+            if (stock != null) {
+                markChanged(stock);
+            }
+        });
+    }
+
+    public int size() {
+        return stocks.size();
+    }
+
+    private void markChanged(Stock stock) {
+        // a plain read first, so a hot product does not contend on the flag as well
+        if (!stock.changed.get() && stock.changed.compareAndSet(false, true)) {
+            changed.add(stock);
+        }
+    }
+}
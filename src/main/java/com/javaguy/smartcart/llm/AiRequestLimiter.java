@@ -0,0 +1,172 @@
+package com.javaguy.smartcart.llm;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for the endpoints that may wait on the chat model. Their work runs on
+ * virtual threads instead of the servlet container's request threads, so a few hundred slow
+ * AI requests no longer starve the catalog endpoints; controllers return the
+ * {@link CompletableFuture} and Spring MVC completes the response asynchronously.
+ *
+ * At most {@code max-concurrent-requests} run at once and up to {@code max-queued-requests}
+ * more wait for a slot, each for at most {@code max-queue-wait}. Anything beyond that is
+ * rejected with {@link AiRequestRejectedException} (429) and a retry hint derived from the
+ * recent request duration and the queue length. This bounds whole requests; the
+ * {@link ChatGateway} bulkhead still bounds the model calls they make.
+ */
+@Component
+public class AiRequestLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AiRequestLimiter.class);
+    // weight of the newest request in the moving average of request durations
+    private static final double DURATION_SMOOTHING = 0.2;
+
+    public record Stats(int active, int queued, int maxConcurrentRequests, int maxQueuedRequests,
+                        long averageDurationMillis) {}
+
+    private final MeterRegistry meterRegistry;
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final Duration maxQueueWait;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-request-", 0).factory());
+    private volatile double averageDurationNanos;
+
+    public AiRequestLimiter(MeterRegistry meterRegistry,
+                            @Value("${smartcart.llm.admission.max-concurrent-requests:8}") int maxConcurrentRequests,
+                            @Value("${smartcart.llm.admission.max-queued-requests:100}") int maxQueuedRequests,
+                            @Value("${smartcart.llm.admission.max-queue-wait:10s}") Duration maxQueueWait) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.maxQueueWait = maxQueueWait;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        Gauge.builder("smartcart.ai.requests.active", () -> maxConcurrentRequests - permits.availablePermits())
+                .description("AI requests currently running")
+                .register(meterRegistry);
+        Gauge.builder("smartcart.ai.requests.queued", queued::get)
+                .description("AI requests waiting for a slot")
+                .register(meterRegistry);
+        log.info("AiRequestLimiter initialized with {} concurrent and {} queued requests, waiting at most {}",
+                maxConcurrentRequests, maxQueuedRequests, maxQueueWait);
+    }
+
+    /**
+     * Runs {@code work} on a virtual thread once a slot is free. The future fails with
+     * {@link AiRequestRejectedException} right away when every slot is taken and the queue is
+     * full, or after {@code max-queue-wait} without a slot; exceptions thrown by the work
+     * complete it as they are.
+     */
+    public <T> CompletableFuture<T> submit(String endpoint, Supplier<T> work) {
+        // a free slot is only taken directly when nobody is waiting, so requests do not overtake the queue
+        boolean admitted = queued.get() == 0 && permits.tryAcquire();
+        if (!admitted && queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet();
+            return CompletableFuture.failedFuture(reject(endpoint, "queue-full"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                if (!admitted) {
+                    awaitSlot(endpoint);
+                }
+                return run(endpoint, work);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            if (admitted) {
+                permits.release();
+            } else {
+                queued.decrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(maxConcurrentRequests - permits.availablePermits(), queued.get(),
+                maxConcurrentRequests, maxQueuedRequests, Math.round(averageDurationNanos / 1_000_000));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void awaitSlot(String endpoint) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxQueueWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(endpoint, "interrupted");
+        } finally {
+            queued.decrementAndGet();
+        }
+        if (!acquired) {
+            throw reject(endpoint, "queue-timeout");
+        }
+    }
+
+    /**
+     * Runs the work holding a slot, which it releases when done.
+     */
+    private <T> T run(String endpoint, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long startNanos = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            permits.release();
+            recordDuration(System.nanoTime() - startNanos);
+            sample.stop(Timer.builder("smartcart.ai.requests")
+                    .description("AI requests admitted by the limiter, from getting a slot to the response")
+                    .tag("endpoint", endpoint)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private AiRequestRejectedException reject(String endpoint, String reason) {
+        meterRegistry.counter("smartcart.ai.requests.rejected", "endpoint", endpoint, "reason", reason).increment();
+        Duration retryAfter = estimatedWait();
+        log.warn("Rejected {} request ({}), retry after {}", endpoint, reason, retryAfter);
+        return new AiRequestRejectedException("Too many AI requests in progress, try again later", retryAfter);
+    }
+
+    /**
+     * Time for the current queue to drain: one average request per queued request and slot, and at least a second.
+     */
+    private Duration estimatedWait() {
+        double rounds = (double) (queued.get() + maxConcurrentRequests) / maxConcurrentRequests;
+        long millis = Math.round(averageDurationNanos * rounds / 1_000_000);
+        return Duration.ofMillis(Math.max(1000, millis));
+    }
+
+    private void recordDuration(long nanos) {
+        double average = averageDurationNanos;
+        // racy updates only lose a sample now and then, which the average does not notice
+        averageDurationNanos = average == 0 ? nanos : average + DURATION_SMOOTHING * (nanos - average);
+    }
+}
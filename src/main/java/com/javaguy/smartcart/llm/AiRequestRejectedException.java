@@ -0,0 +1,22 @@
+package com.javaguy.smartcart.llm;
+
+import java.time.Duration;
+
+/**
+ * Thrown by {@link AiRequestLimiter} when an AI request is turned away because too many are
+ * already running or waiting. Unlike {@link LlmUnavailableException} the model is healthy; the
+ * client is asked to slow down and come back after {@link #getRetryAfter()}.
+ */
+public class AiRequestRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AiRequestRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,342 @@
+package com.javaguy.smartcart.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single entry point from the services to the chat model. Identical prompts that are already
+ * in flight are coalesced, so a burst of requests for the same query or customer results in
+ * one Ollama call whose answer is shared by every waiting caller.
+ *
+ * Calls are protected so a slow or failing Ollama cannot tie up request threads: each
+ * {@link LlmOperation} has its own timeout, a bulkhead caps concurrent model calls, and a
+ * {@link CircuitBreaker} stops calling the model while it is failing or slow. Every way of
+ * not getting an answer surfaces as {@link LlmUnavailableException}. Query embeddings go
+ * through the same protection, since the same Ollama serves them.
+ *
+ * Every call that actually reaches the model is timed as {@code smartcart.llm.calls} and its
+ * prompt size, response size and token usage are recorded, so Ollama capacity can be sized
+ * from production traffic.
+ */
+@Component
+public class ChatGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatGateway.class);
+
+    public record Stats(long requests, long executed, long deduplicated, int inFlight) {}
+
+    private record CallKey(String model, String prompt) {}
+
+    private final ChatModel chatModel;
+    private final MeterRegistry meterRegistry;
+    private final SingleFlight<CallKey, ChatResponse> inFlightCalls = new SingleFlight<>();
+    private final Map<LlmOperation, Duration> timeouts = new EnumMap<>(LlmOperation.class);
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final Duration bulkheadMaxWait;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final DistributionSummary promptSize;
+    private final DistributionSummary responseSize;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+
+    public ChatGateway(ChatModel chatModel, MeterRegistry meterRegistry,
+                       @Value("${smartcart.llm.timeouts.search:5s}") Duration searchTimeout,
+                       @Value("${smartcart.llm.timeouts.recommendation:20s}") Duration recommendationTimeout,
+                       @Value("${smartcart.llm.timeouts.description:60s}") Duration descriptionTimeout,
+                       @Value("${smartcart.llm.timeouts.search-embedding:2s}") Duration searchEmbeddingTimeout,
+                       @Value("${smartcart.llm.bulkhead.max-concurrent-calls:4}") int maxConcurrentCalls,
+                       @Value("${smartcart.llm.bulkhead.max-wait:500ms}") Duration bulkheadMaxWait,
+                       @Value("${smartcart.llm.circuit-breaker.window-size:20}") int windowSize,
+                       @Value("${smartcart.llm.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                       @Value("${smartcart.llm.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                       @Value("${smartcart.llm.circuit-breaker.slow-call-duration:10s}") Duration slowCallDuration,
+                       @Value("${smartcart.llm.circuit-breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                       @Value("${smartcart.llm.circuit-breaker.open-duration:30s}") Duration openDuration,
+                       @Value("${smartcart.llm.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        this.chatModel = chatModel;
+        this.meterRegistry = meterRegistry;
+        this.timeouts.put(LlmOperation.SEARCH, searchTimeout);
+        this.timeouts.put(LlmOperation.RECOMMENDATION, recommendationTimeout);
+        this.timeouts.put(LlmOperation.DESCRIPTION, descriptionTimeout);
+        this.timeouts.put(LlmOperation.SEARCH_EMBEDDING, searchEmbeddingTimeout);
+        this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        this.circuitBreaker = new CircuitBreaker(new CircuitBreaker.Settings(windowSize, minimumCalls,
+                failureRateThreshold, slowCallDuration, slowCallRateThreshold, openDuration, halfOpenCalls));
+        this.promptSize = DistributionSummary.builder("smartcart.llm.prompt.size")
+                .description("Characters sent to the chat model per call")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.responseSize = DistributionSummary.builder("smartcart.llm.response.size")
+                .description("Characters generated by the chat model per call")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.promptTokens = Counter.builder("smartcart.llm.tokens")
+                .description("Tokens reported by the chat model")
+                .tag("type", "prompt")
+                .register(meterRegistry);
+        this.completionTokens = Counter.builder("smartcart.llm.tokens")
+                .description("Tokens reported by the chat model")
+                .tag("type", "completion")
+                .register(meterRegistry);
+        log.info("ChatGateway initialized for model {} with timeouts {} and at most {} concurrent calls",
+                modelName(), timeouts, maxConcurrentCalls);
+    }
+
+    public String call(LlmOperation operation, String prompt) {
+        Generation generation = call(operation, new Prompt(prompt)).getResult();
+        return generation != null ? generation.getOutput().getText() : "";
+    }
+
+    public ChatResponse call(LlmOperation operation, Prompt prompt) {
+        CallKey key = new CallKey(modelName(), prompt.getContents());
+        return inFlightCalls.execute(key, () -> protectedCall(operation, () -> timedCall(prompt)));
+    }
+
+    /**
+     * Embeds a text with the operation's timeout, counting against the same bulkhead and circuit
+     * breaker as chat calls. Embeddings are not coalesced.
+     */
+    public float[] embed(LlmOperation operation, EmbeddingModel embeddingModel, String text) {
+        return protectedCall(operation, () -> embeddingModel.embed(text));
+    }
+
+    /**
+     * Streams the generated text chunk by chunk. Streams are not coalesced: every subscriber
+     * gets its own generation so it can render tokens as they arrive. The operation timeout
+     * applies to the first token and to each gap between tokens.
+     */
+    public Flux<String> stream(LlmOperation operation, Prompt prompt) {
+        return Flux.defer(() -> {
+            acquire(operation);
+            Duration timeout = timeouts.get(operation);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            long startNanos = System.nanoTime();
+            AtomicInteger generatedCharacters = new AtomicInteger();
+            AtomicBoolean released = new AtomicBoolean();
+            promptSize.record(prompt.getContents().length());
+            return chatModel.stream(prompt)
+                    .timeout(timeout)
+                    // Ollama reports token counts on the final chunk only
+                    .doOnNext(response -> recordUsage(response.getMetadata().getUsage()))
+                    .map(ChatResponse::getResult)
+                    .filter(Objects::nonNull)
+                    .map(generation -> generation.getOutput().getText())
+                    .filter(text -> text != null && !text.isEmpty())
+                    .doOnNext(text -> generatedCharacters.addAndGet(text.length()))
+                    .doOnComplete(() -> {
+                        circuitBreaker.onSuccess(Duration.ofNanos(System.nanoTime() - startNanos));
+                        responseSize.record(generatedCharacters.get());
+                        sample.stop(callTimer("stream", "success"));
+                    })
+                    .doOnCancel(() -> {
+                        circuitBreaker.onIgnored();
+                        sample.stop(callTimer("stream", "cancelled"));
+                    })
+                    .onErrorMap(e -> {
+                        circuitBreaker.onFailure();
+                        boolean timedOut = e instanceof TimeoutException;
+                        sample.stop(callTimer("stream", timedOut ? "timeout" : "error"));
+                        return timedOut
+                                ? timeoutException(operation, timeout, e)
+                                : new LlmUnavailableException(LlmUnavailableException.Reason.FAILED,
+                                "Chat model stream failed: " + e.getMessage(), Duration.ZERO, e);
+                    })
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            bulkhead.release();
+                        }
+                    });
+        });
+    }
+
+    public String modelName() {
+        return chatModel.getDefaultOptions().getModel();
+    }
+
+    public Stats stats() {
+        long executed = inFlightCalls.executedCount();
+        long deduplicated = inFlightCalls.deduplicatedCount();
+        return new Stats(executed + deduplicated, executed, deduplicated, inFlightCalls.inFlightCount());
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    public int availableCallSlots() {
+        return bulkhead.availablePermits();
+    }
+
+    public int maxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs the model call on its own virtual thread so the caller can stop waiting at the
+     * deadline. The bulkhead slot is held until the model call really returns: a call that is
+     * abandoned after its timeout still occupies Ollama. An interrupted caller keeps waiting,
+     * since coalesced callers share its answer, and returns with its interrupt status set.
+     */
+    private <T> T protectedCall(LlmOperation operation, Callable<T> modelCall) {
+        acquire(operation);
+        Duration timeout = timeouts.get(operation);
+        Future<T> call;
+        try {
+            call = callExecutor.submit(() -> {
+                try {
+                    return modelCall.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + timeout.toNanos();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    T response = call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    circuitBreaker.onSuccess(Duration.ofNanos(System.nanoTime() - startNanos));
+                    return response;
+                } catch (InterruptedException e) {
+                    // the call is shared with every coalesced caller, so one caller giving up
+                    // must not fail it for the others: keep waiting, bounded by the timeout
+                    interrupted = true;
+                }
+            }
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            circuitBreaker.onFailure();
+            throw timeoutException(operation, timeout, e);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            throw new LlmUnavailableException(LlmUnavailableException.Reason.FAILED,
+                    operation + " model call failed: " + e.getCause().getMessage(), Duration.ZERO, e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Takes a circuit breaker permit and then a bulkhead slot, or throws without calling the model.
+     */
+    private void acquire(LlmOperation operation) {
+        if (!circuitBreaker.tryAcquire()) {
+            reject(operation, "circuit_open");
+            throw new LlmUnavailableException(LlmUnavailableException.Reason.CIRCUIT_OPEN,
+                    "Chat model circuit breaker is open", circuitBreaker.remainingOpenDuration(), null);
+        }
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadMaxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.onIgnored();
+            reject(operation, "bulkhead_full");
+            throw new LlmUnavailableException(LlmUnavailableException.Reason.BULKHEAD_FULL,
+                    "All " + maxConcurrentCalls + " chat model slots are busy", bulkheadMaxWait, null);
+        }
+    }
+
+    private void reject(LlmOperation operation, String reason) {
+        meterRegistry.counter("smartcart.llm.rejected", "operation", tagValue(operation), "reason", reason)
+                .increment();
+        log.warn("Rejected {} model call: {}", operation, reason);
+    }
+
+    private LlmUnavailableException timeoutException(LlmOperation operation, Duration timeout, Throwable cause) {
+        meterRegistry.counter("smartcart.llm.timeouts", "operation", tagValue(operation)).increment();
+        log.warn("{} model call timed out after {}", operation, timeout);
+        return new LlmUnavailableException(LlmUnavailableException.Reason.TIMEOUT,
+                operation + " model call timed out after " + timeout, Duration.ZERO, cause);
+    }
+
+    private ChatResponse timedCall(Prompt prompt) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        promptSize.record(prompt.getContents().length());
+        try {
+            ChatResponse response = chatModel.call(prompt);
+            sample.stop(callTimer("call", "success"));
+            Generation generation = response.getResult();
+            String text = generation != null ? generation.getOutput().getText() : null;
+            responseSize.record(text != null ? text.length() : 0);
+            recordUsage(response.getMetadata().getUsage());
+            return response;
+        } catch (RuntimeException e) {
+            sample.stop(callTimer("call", "error"));
+            throw e;
+        }
+    }
+
+    private Timer callTimer(String mode, String outcome) {
+        return Timer.builder("smartcart.llm.calls")
+                .description("Chat model calls that reached the model")
+                .tag("model", String.valueOf(modelName()))
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void recordUsage(Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            promptTokens.increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            completionTokens.increment(usage.getCompletionTokens());
+        }
+    }
+
+    private static String tagValue(LlmOperation operation) {
+        return operation.name().toLowerCase();
+    }
+}
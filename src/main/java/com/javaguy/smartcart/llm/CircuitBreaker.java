@@ -0,0 +1,165 @@
+package com.javaguy.smartcart.llm;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. While CLOSED the outcomes of the last {@code windowSize} calls
+ * are kept; once at least {@code minimumCalls} are recorded and either the failure rate or the
+ * slow-call rate reaches its threshold, the breaker OPENs and rejects calls for
+ * {@code openDuration}. It then lets {@code halfOpenCalls} trial calls through: if all of them
+ * succeed quickly it CLOSEs again, otherwise it re-opens.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public record Settings(int windowSize, int minimumCalls, double failureRateThreshold,
+                           Duration slowCallDuration, double slowCallRateThreshold,
+                           Duration openDuration, int halfOpenCalls) {}
+
+    private static final byte SUCCESS = 0;
+    private static final byte SLOW = 1;
+    private static final byte FAILURE = 2;
+
+    private final Settings settings;
+    private final LongSupplier nanoTime;
+    private final byte[] window;
+    private int windowNext;
+    private int windowCount;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private long rejected;
+
+    public CircuitBreaker(Settings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    CircuitBreaker(Settings settings, LongSupplier nanoTime) {
+        this.settings = settings;
+        this.nanoTime = nanoTime;
+        this.window = new byte[settings.windowSize()];
+    }
+
+    /**
+     * Whether a call may go ahead. Every permitted call must be followed by exactly one
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= settings.openDuration().toNanos()) {
+            transitionTo(State.HALF_OPEN);
+        }
+        boolean permitted = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (halfOpenPermits < settings.halfOpenCalls()) {
+                    halfOpenPermits++;
+                    yield true;
+                }
+                yield false;
+            }
+        };
+        if (!permitted) {
+            rejected++;
+        }
+        return permitted;
+    }
+
+    public synchronized void onSuccess(Duration elapsed) {
+        record(elapsed.compareTo(settings.slowCallDuration()) >= 0 ? SLOW : SUCCESS);
+    }
+
+    public synchronized void onFailure() {
+        record(FAILURE);
+    }
+
+    /**
+     * Hands back a permit whose call never reached the model, so it counts neither way.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Time left before an open breaker lets trial calls through; zero when not open.
+     */
+    public synchronized Duration remainingOpenDuration() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        long remaining = settings.openDuration().toNanos() - (nanoTime.getAsLong() - openedAt);
+        return Duration.ofNanos(Math.max(0, remaining));
+    }
+
+    public synchronized long rejectedCount() {
+        return rejected;
+    }
+
+    private void record(byte outcome) {
+        if (state == State.HALF_OPEN) {
+            if (outcome != SUCCESS) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= settings.halfOpenCalls()) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // a call permitted before the breaker opened has finished
+            return;
+        }
+        if (windowCount == window.length) {
+            forget(window[windowNext]);
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = outcome;
+        windowNext = (windowNext + 1) % window.length;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+        if (windowCount >= settings.minimumCalls()
+                && (failures >= settings.failureRateThreshold() * windowCount
+                || slowCalls >= settings.slowCallRateThreshold() * windowCount)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void transitionTo(State next) {
+        state = next;
+        windowNext = 0;
+        windowCount = 0;
+        failures = 0;
+        slowCalls = 0;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if (next == State.OPEN) {
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.javaguy.smartcart.llm;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the response cache and call-coalescing statistics that {@code /api/admin} already
+ * reports, so the share of requests that never reach Ollama is visible next to the call timers,
+ * along with the state of the gateway's circuit breaker and bulkhead.
+ */
+@Component
+public class LlmMetrics implements MeterBinder {
+
+    private final LlmResponseCache responseCache;
+    private final ChatGateway chatGateway;
+
+    public LlmMetrics(LlmResponseCache responseCache, ChatGateway chatGateway) {
+        this.responseCache = responseCache;
+        this.chatGateway = chatGateway;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("smartcart.llm.cache.requests", responseCache, cache -> cache.stats().hits())
+                .description("LLM response cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("smartcart.llm.cache.requests", responseCache, cache -> cache.stats().misses())
+                .description("LLM response cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("smartcart.llm.cache.evictions", responseCache, cache -> cache.stats().evictions())
+                .description("LLM responses evicted to stay within max-entries")
+                .register(registry);
+        Gauge.builder("smartcart.llm.cache.size", responseCache, cache -> cache.stats().size())
+                .description("LLM responses currently cached")
+                .register(registry);
+
+        FunctionCounter.builder("smartcart.llm.requests", chatGateway, gateway -> gateway.stats().executed())
+                .description("Blocking chat requests by whether they shared an in-flight call")
+                .tag("coalesced", "false")
+                .register(registry);
+        FunctionCounter.builder("smartcart.llm.requests", chatGateway, gateway -> gateway.stats().deduplicated())
+                .description("Blocking chat requests by whether they shared an in-flight call")
+                .tag("coalesced", "true")
+                .register(registry);
+        Gauge.builder("smartcart.llm.in.flight", chatGateway, gateway -> gateway.stats().inFlight())
+                .description("Distinct chat calls currently waiting on the model")
+                .register(registry);
+
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("smartcart.llm.circuit.state", chatGateway, gateway -> gateway.circuitState() == state ? 1 : 0)
+                    .description("1 for the chat model circuit breaker's current state, 0 otherwise")
+                    .tag("state", state.name().toLowerCase())
+                    .register(registry);
+        }
+        Gauge.builder("smartcart.llm.bulkhead.available", chatGateway, ChatGateway::availableCallSlots)
+                .description("Chat model call slots currently free")
+                .register(registry);
+        Gauge.builder("smartcart.llm.bulkhead.max", chatGateway, ChatGateway::maxConcurrentCalls)
+                .description("Chat model calls allowed at once")
+                .register(registry);
+    }
+}
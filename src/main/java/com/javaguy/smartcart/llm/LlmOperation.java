@@ -0,0 +1,11 @@
+package com.javaguy.smartcart.llm;
+
+/**
+ * What a model call is for; each operation has its own timeout.
+ */
+public enum LlmOperation {
+    SEARCH,
+    RECOMMENDATION,
+    DESCRIPTION,
+    SEARCH_EMBEDDING
+}
@@ -0,0 +1,119 @@
+package com.javaguy.smartcart.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size- and TTL-bounded LRU cache for chat model responses, keyed on the model name, the
+ * kind of prompt and the normalized user input. Identical prompts for popular queries are
+ * answered from memory instead of a multi-second Ollama round trip.
+ */
+@Component
+public class LlmResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    public record Key(String model, String kind, String input) {}
+
+    public record Stats(int size, int maxEntries, long hits, long misses, long evictions, double hitRate) {}
+
+    private record Entry(String response, long expiresAtNanos) {}
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LinkedHashMap<Key, Entry> entries;
+
+    public LlmResponseCache(@Value("${smartcart.llm.cache.max-entries:10000}") int maxEntries,
+                            @Value("${smartcart.llm.cache.ttl:1h}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > LlmResponseCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        log.info("LLM response cache initialized with max {} entries and ttl {}", maxEntries, ttl);
+    }
+
+    /**
+     * Returns the cached response for the key or calls the loader and caches its result.
+     * The loader runs outside the cache lock so a slow model call never blocks other keys;
+     * failures are not cached.
+     */
+    public String get(Key key, Supplier<String> loader) {
+        String cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        String response = loader.get();
+        if (response != null) {
+            synchronized (entries) {
+                entries.put(key, new Entry(response, System.nanoTime() + ttlNanos));
+            }
+        }
+        return response;
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        log.info("LLM response cache cleared");
+    }
+
+    /**
+     * Drops every cached response for the given normalized input, whatever the model or prompt kind.
+     */
+    public int invalidate(String input) {
+        synchronized (entries) {
+            int before = entries.size();
+            entries.keySet().removeIf(key -> key.input().equals(input));
+            return before - entries.size();
+        }
+    }
+
+    public Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, maxEntries, hitCount, missCount, evictions.sum(),
+                total == 0 ? 0.0 : (double) hitCount / total);
+    }
+
+    private String getIfPresent(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos() >= 0) {
+                entries.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.response();
+        }
+    }
+}
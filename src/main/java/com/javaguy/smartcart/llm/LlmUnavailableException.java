@@ -0,0 +1,37 @@
+package com.javaguy.smartcart.llm;
+
+import java.time.Duration;
+
+/**
+ * Thrown by {@link ChatGateway} instead of waiting on, or piling more load onto, a model that
+ * is failing or overloaded. Callers fall back to non-AI results where they have them.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    public enum Reason {
+        TIMEOUT,
+        BULKHEAD_FULL,
+        CIRCUIT_OPEN,
+        FAILED
+    }
+
+    private final Reason reason;
+    private final Duration retryAfter;
+
+    public LlmUnavailableException(Reason reason, String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * How long until the model is worth trying again.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
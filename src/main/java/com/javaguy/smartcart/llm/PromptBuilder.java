@@ -0,0 +1,220 @@
+package com.javaguy.smartcart.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaguy.smartcart.dto.ProductView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the recommendation and keyword-suggestion prompts. Prompt length drives Ollama's
+ * prefill time, so every prompt is kept within {@code max-tokens}, estimated at four characters
+ * a token:
+ * <ul>
+ *     <li>the instructions are a fixed system message, identical for every request of a kind, so
+ *     the model server can reuse the KV cache computed for that prefix;</li>
+ *     <li>purchases are listed newest first within half of the remaining budget, older ones
+ *     summarized as a count per category;</li>
+ *     <li>candidate products fill what is left, at most {@code max-candidates} of them;</li>
+ *     <li>the model answers with a JSON array (candidate ids or keywords) and generates at most
+ *     {@code num-predict} tokens.</li>
+ * </ul>
+ */
+@Component
+public class PromptBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(PromptBuilder.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int SUMMARIZED_CATEGORIES = 3;
+    private static final int SUMMARY_CHARS = 80;
+
+    static final String RECOMMENDATION_INSTRUCTIONS = """
+            You recommend products from an online shop's catalog. The user message lists a customer's \
+            preferences, their purchases (newest first) and candidate products as "id: name [category]". \
+            Pick the candidates that best complement the customer's interests and reply with only a JSON \
+            array of their ids, best first, for example [12,7,3].""";
+
+    static final String KEYWORD_INSTRUCTIONS = """
+            You help an online shop's product search. For the user's query, suggest 3 to 5 alternative \
+            keywords, product categories or brands that match its intent. Reply with only a JSON array \
+            of strings, for example ["headphones","audio","sony"].""";
+
+    private final int maxTokens;
+    private final int maxCandidates;
+    private final int numPredict;
+
+    public PromptBuilder(@Value("${smartcart.llm.prompt.max-tokens:600}") int maxTokens,
+                         @Value("${smartcart.llm.prompt.max-candidates:40}") int maxCandidates,
+                         @Value("${smartcart.llm.prompt.num-predict:64}") int numPredict) {
+        this.maxTokens = maxTokens;
+        this.maxCandidates = maxCandidates;
+        this.numPredict = numPredict;
+        log.info("PromptBuilder initialized with a budget of {} prompt tokens, {} candidates and {} generated tokens",
+                maxTokens, maxCandidates, numPredict);
+    }
+
+    /**
+     * @param purchasesNewestFirst the customer's purchased products, most recent first
+     * @param candidates products the model may pick from, most relevant first
+     * @param maxRecommendations how many ids to ask for
+     */
+    public Prompt recommendationPrompt(List<String> preferences, List<ProductView> purchasesNewestFirst,
+                                       List<ProductView> candidates, int maxRecommendations) {
+        StringBuilder user = new StringBuilder();
+        user.append("Return up to ").append(maxRecommendations).append(" ids.\n");
+        user.append("Preferences: ").append(preferences.isEmpty() ? "none" : String.join(", ", preferences)).append('\n');
+        int remaining = maxTokens * CHARS_PER_TOKEN - RECOMMENDATION_INSTRUCTIONS.length() - user.length();
+        int historyChars = appendPurchases(user, purchasesNewestFirst, remaining / 2);
+        appendCandidates(user, candidates, remaining - historyChars);
+        return prompt(RECOMMENDATION_INSTRUCTIONS, user.toString());
+    }
+
+    /**
+     * Asks for alternative keywords for a search query; an overlong query is cut to the budget.
+     */
+    public Prompt keywordPrompt(String userQuery) {
+        int maxQueryChars = Math.max(0, maxTokens * CHARS_PER_TOKEN - KEYWORD_INSTRUCTIONS.length() - "Query: ".length());
+        String query = userQuery.length() > maxQueryChars ? userQuery.substring(0, maxQueryChars) : userQuery;
+        return prompt(KEYWORD_INSTRUCTIONS, "Query: " + query);
+    }
+
+    /**
+     * Tokens the text is estimated to take; close enough for English text with the usual
+     * tokenizers and needs none of them.
+     */
+    public static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * The numbers in the first JSON array of the response, in order; empty when there is none.
+     */
+    public static List<Long> parseIds(String response) {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode element : firstJsonArray(response)) {
+            if (element.canConvertToLong()) {
+                ids.add(element.asLong());
+            } else if (element.isTextual() && element.asText().trim().matches("\\d{1,18}")) {
+                ids.add(Long.parseLong(element.asText().trim()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The strings in the first JSON array of the response or, when the model ignored the format,
+     * the response split at commas and line breaks.
+     */
+    public static List<String> parseStrings(String response) {
+        if (response == null) {
+            return List.of();
+        }
+        JsonNode array = firstJsonArray(response);
+        List<String> values = new ArrayList<>();
+        if (!array.isEmpty()) {
+            array.forEach(element -> values.add(element.asText().trim()));
+        } else {
+            values.addAll(Arrays.asList(response.split("[,\\n]")));
+        }
+        return values.stream().map(String::trim).filter(value -> !value.isEmpty()).toList();
+    }
+
+    private Prompt prompt(String instructions, String user) {
+        // sent to Ollama as num_predict
+        ChatOptions options = ChatOptions.builder().maxTokens(numPredict).build();
+        return new Prompt(List.of(new SystemMessage(instructions), new UserMessage(user)), options);
+    }
+
+    /**
+     * Lists purchases newest first while they fit in {@code budgetChars}, and the rest as a
+     * count per category. Returns the characters appended.
+     */
+    private static int appendPurchases(StringBuilder prompt, List<ProductView> purchasesNewestFirst, int budgetChars) {
+        String header = "Purchases:\n";
+        if (purchasesNewestFirst.isEmpty() || header.length() > budgetChars) {
+            return 0;
+        }
+        int start = prompt.length();
+        prompt.append(header);
+        int listed = 0;
+        for (ProductView product : purchasesNewestFirst) {
+            String line = "- " + product.name() + " [" + product.category() + "]\n";
+            // unless this is the last purchase, leave room for the summary of those that do not fit
+            int reserve = listed == purchasesNewestFirst.size() - 1 ? 0 : SUMMARY_CHARS;
+            if (prompt.length() - start + line.length() + reserve > budgetChars) {
+                break;
+            }
+            prompt.append(line);
+            listed++;
+        }
+        if (listed < purchasesNewestFirst.size()) {
+            String summary = summarize(purchasesNewestFirst.subList(listed, purchasesNewestFirst.size()));
+            if (prompt.length() - start + summary.length() <= budgetChars) {
+                prompt.append(summary);
+            }
+        }
+        return prompt.length() - start;
+    }
+
+    private static String summarize(List<ProductView> older) {
+        Map<String, Long> byCategory = older.stream()
+                .collect(Collectors.groupingBy(product -> String.valueOf(product.category()), LinkedHashMap::new,
+                        Collectors.counting()));
+        String categories = byCategory.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(SUMMARIZED_CATEGORIES)
+                .map(entry -> entry.getKey() + " " + entry.getValue())
+                .collect(Collectors.joining(", "));
+        return "- " + older.size() + " earlier, mostly " + categories + "\n";
+    }
+
+    private void appendCandidates(StringBuilder prompt, List<ProductView> candidates, int budgetChars) {
+        int used = "Candidates:\n".length();
+        if (candidates.isEmpty() || used > budgetChars) {
+            return;
+        }
+        prompt.append("Candidates:\n");
+        int listed = 0;
+        for (ProductView product : candidates) {
+            String line = product.id() + ": " + product.name() + " [" + product.category() + "]\n";
+            if (listed == maxCandidates || used + line.length() > budgetChars) {
+                break;
+            }
+            prompt.append(line);
+            used += line.length();
+            listed++;
+        }
+    }
+
+    private static JsonNode firstJsonArray(String response) {
+        if (response == null) {
+            return objectMapper.createArrayNode();
+        }
+        int start = response.indexOf('[');
+        int end = response.indexOf(']', start + 1);
+        if (start < 0 || end < 0) {
+            return objectMapper.createArrayNode();
+        }
+        try {
+            JsonNode node = objectMapper.readTree(response.substring(start, end + 1));
+            return node.isArray() ? node : objectMapper.createArrayNode();
+        } catch (IOException e) {
+            return objectMapper.createArrayNode();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.javaguy.smartcart.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sparse, symmetric item-item co-occurrence counts: for each product, how many customers bought
+ * it together with each other product, plus how many bought it at all. Rows are
+ * {@link LongIntHashMap}s, so the matrix holds only primitive ids and counts.
+ *
+ * Neighbours are ranked by cosine similarity, {@code co(a, b) / sqrt(n(a) * n(b))}, which keeps
+ * best sellers from being everyone's neighbour. Each customer's last history is kept so that a
+ * change only adjusts the pairs that involve added or removed products.
+ */
+public class CoPurchaseMatrix {
+
+    public record Neighbour(long productId, double score) {}
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, LongIntHashMap> rows = new HashMap<>();
+    private final LongIntHashMap buyers = new LongIntHashMap();
+    private final Map<Long, long[]> histories = new HashMap<>();
+
+    /**
+     * Replaces what is known about a customer's purchases; duplicates count once.
+     */
+    public void setHistory(long customerId, Collection<Long> purchases) {
+        long[] current = purchases.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        lock.writeLock().lock();
+        try {
+            long[] previous = histories.getOrDefault(customerId, new long[0]);
+            long[] removed = difference(previous, current);
+            long[] added = difference(current, previous);
+            long[] kept = difference(previous, removed);
+            adjust(removed, kept, -1);
+            adjust(added, kept, 1);
+            if (current.length == 0) {
+                histories.remove(customerId);
+            } else {
+                histories.put(customerId, current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code limit} products most similar to {@code productId}, best first.
+     */
+    public List<Neighbour> neighbours(long productId, int limit) {
+        lock.readLock().lock();
+        try {
+            return score(new long[]{productId}, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Products most similar to everything the customer bought (similarities are summed), leaving
+     * out what they already have; empty for a customer without purchases.
+     */
+    public List<Neighbour> recommendFor(long customerId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] purchases = histories.get(customerId);
+            return purchases == null ? List.of() : score(purchases, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param owned sorted product ids, excluded from the result
+     */
+    private List<Neighbour> score(long[] owned, int limit) {
+        LongDoubleAccumulator scores = new LongDoubleAccumulator();
+        for (long productId : owned) {
+            LongIntHashMap row = rows.get(productId);
+            if (row == null) {
+                continue;
+            }
+            double productBuyers = buyers.get(productId);
+            row.forEach((neighbour, count) -> {
+                if (Arrays.binarySearch(owned, neighbour) < 0) {
+                    scores.add(neighbour, count / Math.sqrt(productBuyers * buyers.get(neighbour)));
+                }
+            });
+        }
+        return scores.top(limit);
+    }
+
+    public int productCount() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds {@code delta} to every pair within {@code changed} and between {@code changed} and
+     * {@code kept}, and to the buyer count of each changed product.
+     */
+    private void adjust(long[] changed, long[] kept, int delta) {
+        for (int i = 0; i < changed.length; i++) {
+            buyers.add(changed[i], delta);
+            for (int j = i + 1; j < changed.length; j++) {
+                adjustPair(changed[i], changed[j], delta);
+            }
+            for (long other : kept) {
+                adjustPair(changed[i], other, delta);
+            }
+        }
+    }
+
+    private void adjustPair(long a, long b, int delta) {
+        adjustCell(a, b, delta);
+        adjustCell(b, a, delta);
+    }
+
+    private void adjustCell(long row, long column, int delta) {
+        LongIntHashMap cells = rows.computeIfAbsent(row, id -> new LongIntHashMap());
+        cells.add(column, delta);
+        if (cells.size() == 0) {
+            rows.remove(row);
+        }
+    }
+
+    /**
+     * Elements of sorted {@code a} that are not in sorted {@code b}.
+     */
+    private static long[] difference(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        int count = 0;
+        for (long value : a) {
+            if (Arrays.binarySearch(b, value) < 0) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Sums scores per product in parallel primitive arrays; the few rows of one query rarely
+     * produce more than a few thousand candidates, so ids are looked up in a small hash map
+     * only to find their slot.
+     */
+    private static final class LongDoubleAccumulator {
+        private final LongIntHashMap slots = new LongIntHashMap();
+        private long[] ids = new long[16];
+        private double[] scores = new double[16];
+        private int size;
+
+        void add(long id, double score) {
+            int slot = slots.get(id) - 1;
+            if (slot < 0) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    scores = Arrays.copyOf(scores, size * 2);
+                }
+                slot = size++;
+                ids[slot] = id;
+                slots.add(id, slot + 1);
+            }
+            scores[slot] += score;
+        }
+
+        List<Neighbour> top(int limit) {
+            // selection of the best limit candidates; limit is small, so this is O(size * limit)
+            int count = Math.min(limit, size);
+            List<Neighbour> best = new ArrayList<>(count);
+            boolean[] taken = new boolean[size];
+            for (int rank = 0; rank < count; rank++) {
+                int bestSlot = -1;
+                for (int slot = 0; slot < size; slot++) {
+                    if (!taken[slot] && (bestSlot < 0 || scores[slot] > scores[bestSlot]
+                            || (scores[slot] == scores[bestSlot] && ids[slot] < ids[bestSlot]))) {
+                        bestSlot = slot;
+                    }
+                }
+                taken[bestSlot] = true;
+                best.add(new Neighbour(ids[bestSlot], scores[bestSlot]));
+            }
+            return best;
+        }
+    }
+}
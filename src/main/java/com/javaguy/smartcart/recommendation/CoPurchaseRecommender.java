@@ -0,0 +1,67 @@
+package com.javaguy.smartcart.recommendation;
+
+import com.javaguy.smartcart.dto.CustomerAttribute;
+import com.javaguy.smartcart.event.CustomerProfileChangedEvent;
+import com.javaguy.smartcart.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item-to-item collaborative filtering over {@code Customer.purchaseHistory}: "customers who
+ * bought this also bought". The {@link CoPurchaseMatrix} is built from every history at startup
+ * and kept current from {@link CustomerProfileChangedEvent}s, so recommendations need neither
+ * the chat model nor the database.
+ */
+@Component
+public class CoPurchaseRecommender {
+
+    private static final Logger log = LoggerFactory.getLogger(CoPurchaseRecommender.class);
+
+    private final CustomerRepository customerRepository;
+    private final CoPurchaseMatrix matrix = new CoPurchaseMatrix();
+
+    public CoPurchaseRecommender(CustomerRepository customerRepository) {
+        this.customerRepository = customerRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long startTime = System.currentTimeMillis();
+        Map<Long, List<Long>> histories = new HashMap<>();
+        for (CustomerAttribute<Long> purchase : customerRepository.findAllPurchaseHistory()) {
+            histories.computeIfAbsent(purchase.customerId(), id -> new ArrayList<>()).add(purchase.value());
+        }
+        histories.forEach(matrix::setHistory);
+        log.info("Co-purchase matrix built in {}ms from {} customers, {} products",
+                System.currentTimeMillis() - startTime, histories.size(), matrix.productCount());
+    }
+
+    @EventListener
+    public void onCustomerProfileChanged(CustomerProfileChangedEvent event) {
+        matrix.setHistory(event.customerId(), customerRepository.findPurchaseHistory(event.customerId()));
+    }
+
+    /**
+     * Ids of the products most often bought together with {@code productId}, best first; a
+     * negative {@code limit} counts as zero.
+     */
+    public List<Long> alsoBought(long productId, int limit) {
+        return matrix.neighbours(productId, Math.max(0, limit)).stream().map(CoPurchaseMatrix.Neighbour::productId).toList();
+    }
+
+    /**
+     * Ids of products related to the customer's purchases, best first; empty for a customer
+     * without purchases or whose products nobody else bought.
+     */
+    public List<Long> recommendFor(long customerId, int limit) {
+        return matrix.recommendFor(customerId, Math.max(0, limit)).stream().map(CoPurchaseMatrix.Neighbour::productId).toList();
+    }
+}
@@ -1,10 +1,25 @@
 package com.javaguy.smartcart.repository;
 
+import com.javaguy.smartcart.dto.CustomerAttribute;
 import com.javaguy.smartcart.entity.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByEmail(String email);
+
+    // Customer has two bag collections, which cannot be fetch-joined together; each one is
+    // read with its own projection query instead
+
+    @Query("SELECT new com.javaguy.smartcart.dto.CustomerAttribute(c.id, p) FROM Customer c JOIN c.preferences p")
+    List<CustomerAttribute<String>> findAllPreferences();
+
+    @Query("SELECT new com.javaguy.smartcart.dto.CustomerAttribute(c.id, h) FROM Customer c JOIN c.purchaseHistory h")
+    List<CustomerAttribute<Long>> findAllPurchaseHistory();
+
+    @Query("SELECT h FROM Customer c JOIN c.purchaseHistory h WHERE c.id = :customerId")
+    List<Long> findPurchaseHistory(long customerId);
 }
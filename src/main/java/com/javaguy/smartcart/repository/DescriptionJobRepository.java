@@ -0,0 +1,10 @@
+package com.javaguy.smartcart.repository;
+
+import com.javaguy.smartcart.entity.DescriptionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface DescriptionJobRepository extends JpaRepository<DescriptionJob, Long> {
+    List<DescriptionJob> findByStatus(DescriptionJob.Status status);
+}
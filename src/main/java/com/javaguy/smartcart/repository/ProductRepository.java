@@ -1,13 +1,21 @@
 package com.javaguy.smartcart.repository;
 
+import com.javaguy.smartcart.dto.ProductLabel;
+import com.javaguy.smartcart.dto.ProductStock;
 import com.javaguy.smartcart.entity.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    @EntityGraph(attributePaths = "tags")
     List<Product> findByCategory(String category);
     List<Product> findByBrand(String brand);
 
@@ -18,4 +26,34 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findBySearchQuery(@Param("query") String query);
 
     List<Product> findTop10ByOrderByCreatedAtDesc();
+
+    // Read paths fetch tags in the same query so rendering a list never loads them row by row
+
+    @EntityGraph(attributePaths = "tags")
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    List<Product> findAllWithTags();
+
+    @EntityGraph(attributePaths = "tags")
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findWithTagsById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = "tags")
+    List<Product> findByIdIn(Collection<Long> ids);
+
+    @Query("SELECT new com.javaguy.smartcart.dto.ProductLabel(p.id, p.name, p.category) FROM Product p")
+    List<ProductLabel> findAllLabels();
+
+    @Query("SELECT p.id FROM Product p WHERE p.category = :category")
+    List<Long> findIdsByCategory(@Param("category") String category);
+
+    @Query("SELECT p.id FROM Product p WHERE LOWER(p.category) IN :categories ORDER BY p.id")
+    List<Long> findIdsByCategoryIn(@Param("categories") Collection<String> categories, Pageable pageable);
+
+    @Query("SELECT new com.javaguy.smartcart.dto.ProductStock(p.id, p.stockQuantity) FROM Product p")
+    List<ProductStock> findAllStock();
+
+    // the only way stock is written after a product is created, see Product.stockQuantity
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = :stockQuantity WHERE p.id = :id")
+    int updateStockQuantity(@Param("id") Long id, @Param("stockQuantity") Integer stockQuantity);
 }
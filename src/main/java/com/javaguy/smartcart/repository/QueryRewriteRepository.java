@@ -0,0 +1,7 @@
+package com.javaguy.smartcart.repository;
+
+import com.javaguy.smartcart.entity.QueryRewrite;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface QueryRewriteRepository extends JpaRepository<QueryRewrite, String> {
+}
@@ -0,0 +1,172 @@
+package com.javaguy.smartcart.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton that finds every pattern occurring in a text in a single
+ * case-insensitive pass. Each pattern carries the ids it stands for, so scanning an LLM
+ * response yields catalog product ids directly. Matching is substring-based, like the
+ * {@code String.contains} checks it replaces.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final AhoCorasickMatcher EMPTY = build(Map.of());
+
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    private final int[][] outputs;
+    private final long[][] patternIds;
+
+    private AhoCorasickMatcher(char[][] edgeChars, int[][] edgeTargets, int[] failure, int[][] outputs,
+                               long[][] patternIds) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.failure = failure;
+        this.outputs = outputs;
+        this.patternIds = patternIds;
+    }
+
+    public static AhoCorasickMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param patterns pattern text to the ids reported when it occurs; blank patterns are ignored
+     */
+    public static AhoCorasickMatcher build(Map<String, long[]> patterns) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ownOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ownOutputs.add(new ArrayList<>());
+        long[][] patternIds = new long[patterns.size()][];
+
+        int patternIndex = 0;
+        for (Map.Entry<String, long[]> pattern : patterns.entrySet()) {
+            String text = pattern.getKey();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    ownOutputs.add(new ArrayList<>());
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            patternIds[patternIndex] = pattern.getValue();
+            ownOutputs.get(node).add(patternIndex++);
+        }
+
+        int size = trie.size();
+        char[][] edgeChars = new char[size][];
+        int[][] edgeTargets = new int[size][];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            edgeChars[node] = new char[edges.size()];
+            edgeTargets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[node][i] = edge.getKey();
+                edgeTargets[node][i++] = edge.getValue();
+            }
+        }
+
+        // breadth-first so a node's failure target is always finished before the node itself
+        int[] failure = new int[size];
+        int[][] outputs = new int[size][];
+        outputs[0] = toArray(ownOutputs.get(0));
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            failure[child] = 0;
+            outputs[child] = toArray(ownOutputs.get(child));
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < edgeChars[node].length; i++) {
+                char c = edgeChars[node][i];
+                int child = edgeTargets[node][i];
+                int fallback = failure[node];
+                while (fallback != 0 && next(edgeChars, edgeTargets, fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int target = next(edgeChars, edgeTargets, fallback, c);
+                failure[child] = target < 0 ? 0 : target;
+                outputs[child] = concat(toArray(ownOutputs.get(child)), outputs[failure[child]]);
+                queue.add(child);
+            }
+        }
+        return new AhoCorasickMatcher(edgeChars, edgeTargets, failure, outputs,
+                Arrays.copyOf(patternIds, patternIndex));
+    }
+
+    /**
+     * Distinct ids of every pattern found in {@code text}, in ascending order.
+     */
+    public long[] match(CharSequence text) {
+        long[] found = new long[8];
+        int foundCount = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = next(edgeChars, edgeTargets, state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = next(edgeChars, edgeTargets, state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for (int pattern : outputs[state]) {
+                for (long id : patternIds[pattern]) {
+                    if (foundCount == found.length) {
+                        found = Arrays.copyOf(found, foundCount * 2);
+                    }
+                    found[foundCount++] = id;
+                }
+            }
+        }
+        if (foundCount == 0) {
+            return new long[0];
+        }
+        Arrays.sort(found, 0, foundCount);
+        int distinct = 1;
+        for (int i = 1; i < foundCount; i++) {
+            if (found[i] != found[distinct - 1]) {
+                found[distinct++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, distinct);
+    }
+
+    public int patternCount() {
+        return patternIds.length;
+    }
+
+    private static int next(char[][] edgeChars, int[][] edgeTargets, int node, char c) {
+        int index = Arrays.binarySearch(edgeChars[node], c);
+        return index < 0 ? -1 : edgeTargets[node][index];
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+}
@@ -0,0 +1,255 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.FacetFilter;
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.event.StockChangedEvent;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed (Roaring) bitmaps of product ids per category, brand and tag, one for products in
+ * stock and a {@link BitSlicedIndex} over prices in cents. A filter is a handful of bitmap
+ * ORs (values of one facet) and ANDs (across facets), and a facet count is the cardinality of
+ * an AND, computed without materializing it.
+ *
+ * Product ids are used as bitmap positions directly; Roaring keeps sparse ranges compact. The
+ * index is filled from the catalog snapshot at startup and updated in place on every
+ * {@link ProductsSavedEvent} and {@link StockChangedEvent}, with writers and queries separated by
+ * a read/write lock.
+ *
+ * A price range costs a few dozen bitmap operations, so the bitmaps of recently used ranges
+ * (price filters tend to come from a fixed set of buckets) are kept until the next write.
+ */
+@Component
+public class FacetIndex {
+
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String TAG = "tag";
+    public static final String IN_STOCK = "inStock";
+
+    private static final Logger log = LoggerFactory.getLogger(FacetIndex.class);
+    private static final int MAX_CACHED_PRICE_RANGES = 256;
+
+    public record Result(RoaringBitmap matches, Map<String, Map<String, Integer>> facets) {}
+
+    private final CatalogStore catalogStore;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap inStock = new RoaringBitmap();
+    private final Map<String, RoaringBitmap> categories = new HashMap<>();
+    private final Map<String, RoaringBitmap> brands = new HashMap<>();
+    private final Map<String, RoaringBitmap> tags = new HashMap<>();
+    private final BitSlicedIndex prices = new BitSlicedIndex();
+    private final Map<PriceRange, RoaringBitmap> priceRanges = new ConcurrentHashMap<>();
+
+    public FacetIndex(CatalogStore catalogStore) {
+        this.catalogStore = catalogStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long startTime = System.currentTimeMillis();
+        List<ProductView> products = catalogStore.snapshot().all();
+        addAll(products);
+        log.info("Facet index built in {}ms with {} products, {} categories, {} brands, {} tags",
+                System.currentTimeMillis() - startTime, products.size(), categories.size(), brands.size(), tags.size());
+    }
+
+    @EventListener
+    public void onProductsSaved(ProductsSavedEvent event) {
+        addAll(event.products().stream().map(ProductView::from).toList());
+    }
+
+    @EventListener
+    public void onStockChanged(StockChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.stockOnHand().forEach((productId, onHand) -> {
+                int id = Math.toIntExact(productId);
+                if (!all.contains(id)) {
+                    return;
+                }
+                if (onHand > 0) {
+                    inStock.add(id);
+                } else {
+                    inStock.remove(id);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Products within {@code scope} (every product when null) that pass the filter, plus the
+     * counts of at most {@code maxValues} values per facet. Counts for a facet apply every other
+     * facet's filter but not its own, so they show what selecting another value would return.
+     */
+    public Result query(FacetFilter filter, RoaringBitmap scope, int maxValues) {
+        lock.readLock().lock();
+        try {
+            // every facet bitmap is a subset of all, so without a scope there is nothing to intersect
+            RoaringBitmap base = scope == null ? null : RoaringBitmap.and(scope, all);
+            RoaringBitmap categoryMatch = union(categories, filter.categories());
+            RoaringBitmap brandMatch = union(brands, filter.brands());
+            RoaringBitmap tagMatch = union(tags, filter.tags());
+            RoaringBitmap priceMatch = priceMatch(filter.minPrice(), filter.maxPrice());
+            RoaringBitmap stockMatch = filter.inStockOnly() ? inStock : null;
+
+            // the filters every facet's counts share are intersected once
+            RoaringBitmap common = and(base, priceMatch, stockMatch);
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put(CATEGORY, counts(categories, and(common, brandMatch, tagMatch), maxValues));
+            facets.put(BRAND, counts(brands, and(common, categoryMatch, tagMatch), maxValues));
+            facets.put(TAG, counts(tags, and(common, categoryMatch, brandMatch), maxValues));
+            RoaringBitmap matches = and(common, categoryMatch, brandMatch, tagMatch);
+            RoaringBitmap withoutStock = stockMatch == null ? matches
+                    : and(base, priceMatch, categoryMatch, brandMatch, tagMatch);
+            facets.put(IN_STOCK, Map.of("true", RoaringBitmap.andCardinality(withoutStock, inStock)));
+            return new Result(matches == all || matches == stockMatch ? matches.clone() : matches, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap priceMatch(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        PriceRange range = new PriceRange(minPrice == null ? 0 : cents(minPrice, RoundingMode.CEILING),
+                maxPrice == null ? Long.MAX_VALUE : cents(maxPrice, RoundingMode.FLOOR));
+        RoaringBitmap cached = priceRanges.get(range);
+        if (cached == null) {
+            if (priceRanges.size() >= MAX_CACHED_PRICE_RANGES) {
+                priceRanges.clear();
+            }
+            cached = prices.between(range.min(), range.max());
+            priceRanges.put(range, cached);
+        }
+        return cached;
+    }
+
+    private void addAll(Collection<ProductView> products) {
+        lock.writeLock().lock();
+        try {
+            products.forEach(this::add);
+            priceRanges.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(ProductView product) {
+        int id = Math.toIntExact(product.id());
+        if (!all.checkedAdd(id)) {
+            removeFromValues(categories, id);
+            removeFromValues(brands, id);
+            removeFromValues(tags, id);
+            inStock.remove(id);
+            prices.remove(id);
+        }
+        addToValue(categories, product.category(), id);
+        addToValue(brands, product.brand(), id);
+        product.tags().forEach(tag -> addToValue(tags, tag, id));
+        if (product.stockQuantity() != null && product.stockQuantity() > 0) {
+            inStock.add(id);
+        }
+        if (product.price() != null && product.price().signum() >= 0) {
+            prices.set(id, cents(product.price(), RoundingMode.HALF_UP));
+        }
+    }
+
+    private static void addToValue(Map<String, RoaringBitmap> values, String value, int id) {
+        if (value != null && !value.isBlank()) {
+            values.computeIfAbsent(value, v -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    /**
+     * Updates are rare next to queries, so an updated product is simply removed from every value.
+     */
+    private static void removeFromValues(Map<String, RoaringBitmap> values, int id) {
+        values.values().removeIf(bitmap -> bitmap.checkedRemove(id) && bitmap.isEmpty());
+    }
+
+    private static RoaringBitmap union(Map<String, RoaringBitmap> values, Collection<String> selected) {
+        if (selected == null || selected.isEmpty()) {
+            return null;
+        }
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (String value : selected) {
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return RoaringBitmap.or(bitmaps.iterator());
+    }
+
+    /**
+     * Intersection of the non-null bitmaps, {@code all} when every one is null. May return one of
+     * the arguments itself, which must then not be modified.
+     */
+    private RoaringBitmap and(RoaringBitmap... bitmaps) {
+        RoaringBitmap result = null;
+        for (RoaringBitmap bitmap : bitmaps) {
+            if (bitmap != null) {
+                result = result == null ? bitmap : RoaringBitmap.and(result, bitmap);
+            }
+        }
+        return result == null ? all : result;
+    }
+
+    /**
+     * The values with the most products within {@code within}, best first. A value whose whole
+     * bitmap is smaller than the current last place cannot make the cut and is not intersected.
+     */
+    private static Map<String, Integer> counts(Map<String, RoaringBitmap> values, RoaringBitmap within, int maxValues) {
+        Comparator<Map.Entry<String, Integer>> byCount = Map.Entry.<String, Integer>comparingByValue()
+                .thenComparing(Map.Entry.<String, Integer>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(byCount);
+        for (Map.Entry<String, RoaringBitmap> value : values.entrySet()) {
+            if (top.size() == maxValues && value.getValue().getCardinality() < top.peek().getValue()) {
+                continue;
+            }
+            int count = RoaringBitmap.andCardinality(value.getValue(), within);
+            if (count > 0) {
+                top.add(Map.entry(value.getKey(), count));
+                if (top.size() > maxValues) {
+                    top.poll();
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(top);
+        sorted.sort(byCount.reversed());
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        sorted.forEach(entry -> counts.put(entry.getKey(), entry.getValue()));
+        return counts;
+    }
+
+    private record PriceRange(long min, long max) {}
+
+    private static long cents(BigDecimal price, RoundingMode rounding) {
+        return price.movePointRight(2).setScale(0, rounding).longValueExact();
+    }
+}
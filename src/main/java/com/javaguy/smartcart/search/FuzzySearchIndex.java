@@ -0,0 +1,71 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Typo-tolerant search over product names, brands, categories and tags, used by
+ * {@code AISearchService} between the keyword index and the chat model: "macbok" or "runing
+ * shoes" find their products through a {@link TrigramIndex} instead of an Ollama call.
+ * Descriptions are left out, they are long and would mostly add near-miss noise.
+ */
+@Component
+public class FuzzySearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FuzzySearchIndex.class);
+
+    private final CatalogStore catalogStore;
+    private final TrigramIndex index;
+    private volatile boolean ready;
+
+    public FuzzySearchIndex(CatalogStore catalogStore,
+                            @Value("${smartcart.search.fuzzy.max-edits:2}") int maxEdits) {
+        this.catalogStore = catalogStore;
+        this.index = new TrigramIndex(maxEdits);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long startTime = System.currentTimeMillis();
+        List<ProductView> products = catalogStore.snapshot().all();
+        products.forEach(this::add);
+        ready = true;
+        log.info("Fuzzy search index built in {}ms: {} products, {} terms",
+                System.currentTimeMillis() - startTime, products.size(), index.termCount());
+    }
+
+    @EventListener
+    public void onProductsSaved(ProductsSavedEvent event) {
+        event.products().stream().map(ProductView::from).forEach(this::add);
+    }
+
+    /**
+     * Ids of the products whose terms are closest to the query's, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        return index.search(TextAnalyzer.tokenize(query), limit).stream()
+                .map(TrigramIndex.Match::productId)
+                .toList();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void add(ProductView product) {
+        List<String> terms = TextAnalyzer.tokenize(product.name());
+        terms.addAll(TextAnalyzer.tokenize(product.brand()));
+        terms.addAll(TextAnalyzer.tokenize(product.category()));
+        product.tags().forEach(tag -> terms.addAll(TextAnalyzer.tokenize(tag)));
+        index.add(product.id(), terms);
+    }
+}
@@ -0,0 +1,327 @@
+package com.javaguy.smartcart.search;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World graph for approximate nearest neighbour search over
+ * embedding vectors. Vectors are L2-normalized on insertion so similarity is a plain dot
+ * product (cosine). Re-inserting an id tombstones its previous node.
+ *
+ * {@link #writeTo} and {@link #readFrom} store the graph as it is, tombstones included, so a
+ * loaded index answers exactly like the one that was written.
+ */
+public class HnswIndex {
+
+    public record Match(long id, float similarity) {}
+
+    private record Candidate(int node, float similarity) {}
+
+    private static final Comparator<Candidate> CLOSEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity).reversed();
+    private static final Comparator<Candidate> FARTHEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity);
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public void add(long id, float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            int node = nodes.size();
+            nodes.add(new Node(id, normalized, level, m, maxM0));
+            nodeById.put(id, node);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                List<Candidate> found = searchLayer(normalized, current, efConstruction, layer);
+                int maxLinks = layer == 0 ? maxM0 : m;
+                for (Candidate neighbour : found.subList(0, Math.min(m, found.size()))) {
+                    connect(node, neighbour.node(), layer, maxLinks);
+                    connect(neighbour.node(), node, layer, maxLinks);
+                }
+                current = found.get(0).node();
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code k} live ids closest to {@code query}, most similar first.
+     * {@code ef} is the size of the dynamic candidate list; larger values trade speed for recall.
+     */
+    public List<Match> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            List<Match> matches = new ArrayList<>(k);
+            for (Candidate candidate : searchLayer(normalized, current, Math.max(ef, k), 0)) {
+                if (!deleted.get(candidate.node())) {
+                    matches.add(new Match(nodes.get(candidate.node()).id, candidate.similarity()));
+                    if (matches.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            out.writeInt(nodes.size());
+            for (Node node : nodes) {
+                out.writeLong(node.id);
+                IndexSnapshotStore.writeFloats(out, node.vector);
+                out.writeInt(node.links.length);
+                for (int layer = 0; layer < node.links.length; layer++) {
+                    IndexSnapshotStore.writeInts(out, node.links[layer], node.linkCounts[layer]);
+                }
+            }
+            long[] deletedWords = deleted.toLongArray();
+            IndexSnapshotStore.writeLongs(out, deletedWords, deletedWords.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex readFrom(ByteBuffer buffer) {
+        HnswIndex index = new HnswIndex(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        index.entryPoint = buffer.getInt();
+        index.maxLevel = buffer.getInt();
+        int nodeCount = buffer.getInt();
+        if (nodeCount < 0 || index.entryPoint >= nodeCount || (nodeCount > 0) != (index.entryPoint >= 0)) {
+            throw new IllegalArgumentException("invalid graph header");
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            long id = buffer.getLong();
+            float[] vector = IndexSnapshotStore.readFloats(buffer);
+            int layers = buffer.getInt();
+            if (vector.length != index.dimensions || layers <= 0 || layers > index.maxLevel + 1) {
+                throw new IllegalArgumentException("invalid node " + i);
+            }
+            Node node = new Node(id, vector, layers - 1, index.m, index.maxM0);
+            for (int layer = 0; layer < layers; layer++) {
+                int[] links = IndexSnapshotStore.readInts(buffer);
+                if (links.length > node.links[layer].length) {
+                    throw new IllegalArgumentException("node " + i + " has too many links on layer " + layer);
+                }
+                for (int link : links) {
+                    if (link < 0 || link >= nodeCount) {
+                        throw new IllegalArgumentException("node " + i + " links to missing node " + link);
+                    }
+                }
+                System.arraycopy(links, 0, node.links[layer], 0, links.length);
+                node.linkCounts[layer] = links.length;
+            }
+            index.nodes.add(node);
+            // a re-inserted id was added after its tombstoned node, so the last node wins as in add()
+            index.nodeById.put(id, i);
+        }
+        index.deleted.or(BitSet.valueOf(IndexSnapshotStore.readLongs(buffer)));
+        return index;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = dot(query, nodes.get(current).vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                float similarity = dot(query, nodes.get(neighbour).vector);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; the result is sorted most similar first.
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int layer) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(CLOSEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+        Candidate first = new Candidate(start, dot(query, nodes.get(start).vector));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            Node node = nodes.get(closest.node());
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = dot(query, nodes.get(neighbour).vector);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(CLOSEST_FIRST);
+        return sorted;
+    }
+
+    private void connect(int from, int to, int layer, int maxLinks) {
+        Node node = nodes.get(from);
+        int count = node.linkCounts[layer];
+        if (count < maxLinks) {
+            node.links[layer][count] = to;
+            node.linkCounts[layer]++;
+            return;
+        }
+        // full: replace the least similar existing link if the new one is closer
+        int weakest = -1;
+        float weakestSimilarity = dot(node.vector, nodes.get(to).vector);
+        for (int i = 0; i < count; i++) {
+            float similarity = dot(node.vector, nodes.get(node.links[layer][i]).vector);
+            if (similarity < weakestSimilarity) {
+                weakestSimilarity = similarity;
+                weakest = i;
+            }
+        }
+        if (weakest >= 0) {
+            node.links[layer][weakest] = to;
+        }
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static final class Node {
+        final long id;
+        final float[] vector;
+        final int[][] links;
+        final int[] linkCounts;
+
+        Node(long id, float[] vector, int level, int m, int maxM0) {
+            this.id = id;
+            this.vector = vector;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? maxM0 : m];
+            }
+        }
+    }
+}
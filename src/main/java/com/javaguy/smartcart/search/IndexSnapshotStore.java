@@ -0,0 +1,195 @@
+package com.javaguy.smartcart.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Stores in-memory search indexes as files under {@code smartcart.search.snapshot-directory}, so
+ * a restarted node can load them instead of re-tokenizing or re-embedding the whole catalog.
+ * Snapshots are only useful with a database that survives restarts, see the {@code persistent}
+ * profile; with no directory configured nothing is read or written.
+ *
+ * A file holds a header (magic number, format version, a key) and the index's own payload. The
+ * key names everything the index was built from, typically the index format and the catalog's
+ * {@code contentFingerprint()}; a file whose key differs from the expected one is ignored and
+ * the index is rebuilt. Files are memory-mapped for reading and written to a temporary file that
+ * is then moved into place, so a crash mid-write never leaves a truncated snapshot behind.
+ *
+ * Numbers are big-endian, as written by {@link DataOutputStream} and read by {@link ByteBuffer}.
+ */
+@Component
+public class IndexSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexSnapshotStore.class);
+    private static final int MAGIC = 0x53434958; // "SCIX"
+    private static final int FORMAT_VERSION = 1;
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(ByteBuffer buffer);
+    }
+
+    private final Path directory;
+
+    public IndexSnapshotStore(@Value("${smartcart.search.snapshot-directory:}") String directory) {
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        if (this.directory != null) {
+            log.info("Search index snapshots are kept in {}", this.directory.toAbsolutePath());
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * The index stored under {@code name}, or empty when there is none, it was written for a
+     * different key or it cannot be read.
+     */
+    public <T> Optional<T> load(String name, String key, Reader<T> reader) {
+        if (directory == null) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(name + ".idx");
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.info("Ignoring index snapshot {}: not a snapshot of this format", file);
+                return Optional.empty();
+            }
+            String storedKey = readString(buffer);
+            if (!storedKey.equals(key)) {
+                log.info("Ignoring index snapshot {}: written for {}, expected {}", file, storedKey, key);
+                return Optional.empty();
+            }
+            T index = reader.read(buffer);
+            log.info("Loaded index snapshot {} ({} bytes) in {}ms",
+                    file, channel.size(), System.currentTimeMillis() - startTime);
+            return Optional.of(index);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Ignoring unreadable index snapshot {}: {}", file, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the snapshot stored under {@code name}. Failures are logged, not thrown: a missing
+     * snapshot only costs a rebuild on the next start.
+     */
+    public void save(String name, String key, Writer writer) {
+        if (directory == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        Path file = directory.resolve(name + ".idx");
+        Path temporary = directory.resolve(name + ".idx.tmp");
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, key);
+                writer.write(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved index snapshot {} ({} bytes) in {}ms",
+                    file, Files.size(file), System.currentTimeMillis() - startTime);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save index snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[checkedLength(buffer.getInt(), buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Bulk-copies a length-prefixed array out of the (mapped) buffer.
+     */
+    static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[checkedLength(buffer.getInt(), buffer, Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeLong(values[i]);
+        }
+    }
+
+    static long[] readLongs(ByteBuffer buffer) {
+        long[] values = new long[checkedLength(buffer.getInt(), buffer, Long.BYTES)];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    static float[] readFloats(ByteBuffer buffer) {
+        float[] values = new float[checkedLength(buffer.getInt(), buffer, Float.BYTES)];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+        return values;
+    }
+
+    /**
+     * A corrupt length must fail the load rather than allocate an arbitrarily large array.
+     */
+    private static int checkedLength(int length, ByteBuffer buffer, int elementBytes) {
+        if (length < 0 || (long) length * elementBytes > buffer.remaining()) {
+            throw new IllegalArgumentException("invalid length " + length + " at offset " + buffer.position());
+        }
+        return length;
+    }
+}
@@ -0,0 +1,338 @@
+package com.javaguy.smartcart.search;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Token -> posting list index with BM25 ranking.
+ *
+ * Documents are addressed by a dense ordinal assigned on insertion; postings are kept as
+ * parallel primitive arrays (ordinal, term frequency) so a lookup never boxes. Re-adding a
+ * product id tombstones its previous ordinal instead of rewriting postings, which keeps
+ * writes cheap for a catalog that is updated far less often than it is searched.
+ *
+ * {@link #writeTo} stores the index without its tombstones and {@link #readFrom} loads it back
+ * with bulk array copies, so a restart does not have to tokenize the catalog again.
+ */
+public class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int MAX_PREFIX_EXPANSIONS = 16;
+
+    private static final int POOLED_SCRATCH = 16;
+
+    // score per document ordinal, all zero between searches
+    private static final ScratchPool<float[]> SCORES = new ScratchPool<>(POOLED_SCRATCH, () -> new float[0]);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] docIds = new long[64];
+    private int[] docLengths = new int[64];
+    private int docCount;
+    private int liveDocs;
+    private long liveLength;
+
+    public InvertedIndex() {
+    }
+
+    private InvertedIndex(long[] docIds, int[] docLengths, TreeMap<String, Postings> terms) {
+        this.docIds = docIds.length == 0 ? new long[64] : docIds;
+        this.docLengths = docLengths.length == 0 ? new int[64] : docLengths;
+        this.docCount = docIds.length;
+        this.liveDocs = docIds.length;
+        this.terms.putAll(terms);
+        for (int ordinal = 0; ordinal < docIds.length; ordinal++) {
+            ordinalById.put(docIds[ordinal], ordinal);
+            liveLength += docLengths[ordinal];
+        }
+    }
+
+    public void add(long productId, List<String> tokens) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinalById.get(productId);
+            if (previous != null) {
+                deleted.set(previous);
+                liveDocs--;
+                liveLength -= docLengths[previous];
+            }
+            int ordinal = docCount++;
+            if (ordinal == docIds.length) {
+                docIds = Arrays.copyOf(docIds, ordinal * 2);
+                docLengths = Arrays.copyOf(docLengths, ordinal * 2);
+            }
+            docIds[ordinal] = productId;
+            docLengths[ordinal] = tokens.size();
+            ordinalById.put(productId, ordinal);
+            liveDocs++;
+            liveLength += tokens.size();
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+            frequencies.forEach((term, tf) -> terms.computeIfAbsent(term, t -> new Postings()).append(ordinal, tf));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks live documents against the query tokens and returns up to {@code limit}
+     * product ids, best match first. A token with no exact entry in the dictionary is
+     * expanded to the terms it prefixes, so "lap" still finds "laptop" the way the old
+     * substring search did.
+     */
+    public List<Long> search(List<String> queryTokens, int limit) {
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return List.of();
+            }
+            float[] scores = scratch(docCount);
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            float avgLength = (float) liveLength / liveDocs;
+
+            for (Postings postings : lookup(queryTokens)) {
+                float idf = idf(postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    int tf = postings.freqs[i];
+                    float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    if (scores[doc] == 0f) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            List<Long> results = topK(scores, touched, touchedCount, limit);
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0f;
+            }
+            SCORES.release(scores);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the live documents, renumbered densely, and their postings; tombstoned documents
+     * and terms left without live postings are dropped.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            int[] compacted = new int[docCount];
+            long[] liveIds = new long[liveDocs];
+            int[] liveLengths = new int[liveDocs];
+            int live = 0;
+            for (int ordinal = 0; ordinal < docCount; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    compacted[ordinal] = -1;
+                } else {
+                    liveIds[live] = docIds[ordinal];
+                    liveLengths[live] = docLengths[ordinal];
+                    compacted[ordinal] = live++;
+                }
+            }
+            IndexSnapshotStore.writeLongs(out, liveIds, live);
+            IndexSnapshotStore.writeInts(out, liveLengths, live);
+
+            List<Map.Entry<String, Postings>> liveTerms = new ArrayList<>(terms.size());
+            for (Map.Entry<String, Postings> term : terms.entrySet()) {
+                Postings source = term.getValue();
+                Postings copy = new Postings();
+                for (int i = 0; i < source.size; i++) {
+                    if (compacted[source.docs[i]] >= 0) {
+                        copy.append(compacted[source.docs[i]], source.freqs[i]);
+                    }
+                }
+                if (copy.size > 0) {
+                    liveTerms.add(Map.entry(term.getKey(), copy));
+                }
+            }
+            out.writeInt(liveTerms.size());
+            for (Map.Entry<String, Postings> term : liveTerms) {
+                IndexSnapshotStore.writeString(out, term.getKey());
+                IndexSnapshotStore.writeInts(out, term.getValue().docs, term.getValue().size);
+                IndexSnapshotStore.writeInts(out, term.getValue().freqs, term.getValue().size);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static InvertedIndex readFrom(ByteBuffer buffer) {
+        long[] docIds = IndexSnapshotStore.readLongs(buffer);
+        int[] docLengths = IndexSnapshotStore.readInts(buffer);
+        if (docLengths.length != docIds.length) {
+            throw new IllegalArgumentException("document ids and lengths differ in size");
+        }
+        TreeMap<String, Postings> terms = new TreeMap<>();
+        int termCount = buffer.getInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = IndexSnapshotStore.readString(buffer);
+            Postings postings = new Postings();
+            postings.docs = IndexSnapshotStore.readInts(buffer);
+            postings.freqs = IndexSnapshotStore.readInts(buffer);
+            postings.size = postings.docs.length;
+            if (postings.freqs.length != postings.size) {
+                throw new IllegalArgumentException("postings of " + term + " are inconsistent");
+            }
+            for (int doc : postings.docs) {
+                if (doc < 0 || doc >= docIds.length) {
+                    throw new IllegalArgumentException("posting of " + term + " points at missing document " + doc);
+                }
+            }
+            terms.put(term, postings);
+        }
+        return new InvertedIndex(docIds, docLengths, terms);
+    }
+
+    private List<Postings> lookup(List<String> queryTokens) {
+        List<Postings> matched = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(queryTokens)) {
+            Postings exact = terms.get(token);
+            if (exact != null) {
+                matched.add(exact);
+            } else if (token.length() >= MIN_PREFIX_LENGTH) {
+                NavigableMap<String, Postings> expansions = terms.subMap(token, true, token + Character.MAX_VALUE, false);
+                expansions.values().stream().limit(MAX_PREFIX_EXPANSIONS).forEach(matched::add);
+            }
+        }
+        return matched;
+    }
+
+    private float idf(int docFreq) {
+        // docFreq may still count tombstoned documents; that only slightly understates idf
+        return (float) Math.log(1 + (liveDocs - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private List<Long> topK(float[] scores, int[] touched, int touchedCount, int limit) {
+        int k = Math.min(limit, touchedCount);
+        // min-heap on score, ties broken in favour of the earlier ordinal
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            if (heapSize < k) {
+                heap[heapSize] = doc;
+                siftUp(heap, heapSize++, scores);
+            } else if (better(doc, heap[0], scores)) {
+                heap[0] = doc;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        Long[] ranked = new Long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = docIds[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i, scores);
+        }
+        return Arrays.asList(ranked);
+    }
+
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], heap[index], scores)) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(heap[left], heap[right], scores)) {
+                worst = right;
+            }
+            if (!better(heap[index], heap[worst], scores)) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private static float[] scratch(int size) {
+        float[] scores = SCORES.acquire();
+        return scores.length < size ? new float[Math.max(size, scores.length * 2)] : scores;
+    }
+
+    static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void append(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, Math.max(4, size * 2));
+                freqs = Arrays.copyOf(freqs, Math.max(4, size * 2));
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
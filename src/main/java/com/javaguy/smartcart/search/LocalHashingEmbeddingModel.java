@@ -0,0 +1,69 @@
+package com.javaguy.smartcart.search;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Deterministic, dependency-free stand-in for the Ollama embedding model. Words and their
+ * character trigrams are feature-hashed into a fixed number of dimensions, so texts sharing
+ * vocabulary (or spelling) end up close together. Good enough to exercise semantic search
+ * locally and in tests without a running Ollama.
+ */
+public class LocalHashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+
+    public LocalHashingEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        for (String token : TextAnalyzer.tokenize(text)) {
+            add(vector, token, 1f);
+            String padded = "#" + token + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, padded.substring(i, i + 3), 0.5f);
+            }
+        }
+        return vector;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        CRC32 crc = new CRC32();
+        crc.update(feature.getBytes(StandardCharsets.UTF_8));
+        long hash = crc.getValue();
+        int bucket = (int) (hash % dimensions);
+        // the sign bit keeps colliding features from always reinforcing each other
+        vector[bucket] += ((hash >>> 31) & 1) == 0 ? weight : -weight;
+    }
+}
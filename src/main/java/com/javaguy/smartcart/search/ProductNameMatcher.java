@@ -0,0 +1,105 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.dto.ProductLabel;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maps free-form LLM output to catalog products by scanning it once with an Aho-Corasick
+ * automaton over every product name and category. A product matches when its name or its
+ * category occurs in the text, the same rule the services used to apply with
+ * {@code String.contains} over {@code findAll()}.
+ *
+ * The automaton is immutable; saved products update the label table and trigger a rebuild
+ * on a background thread, with bursts of saves coalesced into one rebuild.
+ */
+@Component
+public class ProductNameMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductNameMatcher.class);
+
+    private final ProductRepository productRepository;
+    private final Map<Long, ProductLabel> labels = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService rebuilder =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("product-matcher").factory());
+    private volatile AhoCorasickMatcher matcher = AhoCorasickMatcher.empty();
+    private volatile boolean ready;
+
+    public ProductNameMatcher(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        productRepository.findAllLabels().forEach(label -> labels.put(label.id(), label));
+        rebuild();
+        ready = true;
+    }
+
+    @EventListener
+    public void onProductsSaved(ProductsSavedEvent event) {
+        event.products().forEach(product ->
+                labels.put(product.getId(), new ProductLabel(product.getId(), product.getName(), product.getCategory())));
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    /**
+     * Ids of the products mentioned in {@code text}, lowest id first, at most {@code limit}.
+     */
+    public List<Long> match(String text, int limit) {
+        long[] ids = matcher.match(text);
+        return Arrays.stream(ids, 0, Math.min(limit, ids.length)).boxed().toList();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void rebuild() {
+        long startTime = System.currentTimeMillis();
+        Map<String, List<Long>> idsByPattern = new HashMap<>();
+        for (ProductLabel label : labels.values()) {
+            addPattern(idsByPattern, label.name(), label.id());
+            addPattern(idsByPattern, label.category(), label.id());
+        }
+        Map<String, long[]> patterns = new HashMap<>();
+        idsByPattern.forEach((pattern, ids) -> patterns.put(pattern, ids.stream().mapToLong(Long::longValue).toArray()));
+        matcher = AhoCorasickMatcher.build(patterns);
+        log.info("Product matcher built in {}ms with {} patterns over {} products",
+                System.currentTimeMillis() - startTime, matcher.patternCount(), labels.size());
+    }
+
+    private static void addPattern(Map<String, List<Long>> idsByPattern, String pattern, long id) {
+        if (pattern != null && !pattern.isBlank()) {
+            idsByPattern.computeIfAbsent(pattern.toLowerCase(Locale.ROOT), p -> new ArrayList<>()).add(id);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-process full-text index over the product catalog, used by {@code AISearchService}
+ * as its first search tier instead of the LIKE scan in {@code ProductRepository.findBySearchQuery}.
+ *
+ * With snapshots enabled the index is saved after it is built and on shutdown, and a start
+ * whose catalog has the same content fingerprint loads it instead of tokenizing every product.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+    private static final int BUILD_PAGE_SIZE = 1000;
+    private static final String SNAPSHOT_NAME = "bm25";
+    // bump when TextAnalyzer or the InvertedIndex layout changes, so old snapshots are not loaded
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private final ProductRepository productRepository;
+    private final CatalogStore catalogStore;
+    private final IndexSnapshotStore snapshotStore;
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile boolean ready;
+    // key of the snapshot on disk that matches the index, if any
+    private String savedSnapshotKey;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              CatalogStore catalogStore,
+                              IndexSnapshotStore snapshotStore) {
+        this.productRepository = productRepository;
+        this.catalogStore = catalogStore;
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Synchronized with {@link #onProductsSaved} so no save is lost while a snapshot replaces the index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void build() {
+        long startTime = System.currentTimeMillis();
+        String snapshotKey = snapshotKey();
+        Optional<InvertedIndex> snapshot = snapshotStore.load(SNAPSHOT_NAME, snapshotKey, InvertedIndex::readFrom);
+        if (snapshot.isPresent()) {
+            index = snapshot.get();
+            savedSnapshotKey = snapshotKey;
+            ready = true;
+            log.info("Product search index loaded from snapshot in {}ms: {} products, {} terms",
+                    System.currentTimeMillis() - startTime, index.size(), index.termCount());
+            return;
+        }
+        Page<Product> page = productRepository.findAll(PageRequest.of(0, BUILD_PAGE_SIZE, Sort.by("id")));
+        while (true) {
+            page.forEach(this::add);
+            if (!page.hasNext()) {
+                break;
+            }
+            page = productRepository.findAll(page.nextPageable());
+        }
+        ready = true;
+        log.info("Product search index built in {}ms: {} products, {} terms",
+                System.currentTimeMillis() - startTime, index.size(), index.termCount());
+        // keyed by the catalog as it was before reading it, so products saved meanwhile invalidate it
+        if (snapshotStore.isEnabled()) {
+            snapshotStore.save(SNAPSHOT_NAME, snapshotKey, index::writeTo);
+            savedSnapshotKey = snapshotKey;
+        }
+    }
+
+    @EventListener
+    public synchronized void onProductsSaved(ProductsSavedEvent event) {
+        event.products().forEach(this::add);
+    }
+
+    /**
+     * Product saves stop with the web server, before this runs, so the index and the catalog agree.
+     */
+    @PreDestroy
+    synchronized void saveSnapshot() {
+        String snapshotKey = snapshotKey();
+        if (ready && snapshotStore.isEnabled() && !snapshotKey.equals(savedSnapshotKey)) {
+            snapshotStore.save(SNAPSHOT_NAME, snapshotKey, index::writeTo);
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching products, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        return index.search(TextAnalyzer.tokenize(query), limit);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private String snapshotKey() {
+        return "bm25-v" + SNAPSHOT_FORMAT + "-" + Long.toHexString(catalogStore.snapshot().contentFingerprint());
+    }
+
+    private void add(Product product) {
+        index.add(product.getId(), TextAnalyzer.tokenize(product));
+    }
+}
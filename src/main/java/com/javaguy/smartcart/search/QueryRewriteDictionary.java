@@ -0,0 +1,144 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.entity.QueryRewrite;
+import com.javaguy.smartcart.repository.QueryRewriteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Query rewrites learned from the enhanced search tier: the keywords the chat model suggests
+ * for a query are kept together with whether they found products, and once they did, the next
+ * search for the same intent is expanded with them in memory instead of asking Ollama again.
+ *
+ * Lookups and updates only touch {@link QueryRewriteRules}; changed rules are written behind to
+ * the {@code query_rewrites} table every {@code flush-interval} and on shutdown, so searches
+ * never wait on the database. With the {@code persistent} profile the dictionary survives
+ * restarts.
+ */
+@Component
+public class QueryRewriteDictionary {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryRewriteDictionary.class);
+
+    private final QueryRewriteRepository queryRewriteRepository;
+    private final QueryRewriteRules rules;
+
+    public QueryRewriteDictionary(QueryRewriteRepository queryRewriteRepository,
+                                  @Value("${smartcart.search.rewrites.min-confidence:0.6}") double minConfidence,
+                                  @Value("${smartcart.search.rewrites.max-rules:10000}") int maxRules) {
+        this.queryRewriteRepository = queryRewriteRepository;
+        this.rules = new QueryRewriteRules(minConfidence, maxRules);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<QueryRewriteRules.Rule> stored = queryRewriteRepository.findAll().stream()
+                .map(QueryRewriteDictionary::toRule)
+                .toList();
+        rules.load(stored);
+        log.info("Loaded {} query rewrites", stored.size());
+    }
+
+    public Optional<String> rewrite(String query) {
+        return rules.rewrite(query);
+    }
+
+    public void recordOutcome(String query, boolean found) {
+        rules.recordOutcome(query, found);
+    }
+
+    public void learn(String query, String suggestedKeywords, boolean found) {
+        rules.learn(query, suggestedKeywords, found);
+    }
+
+    public List<QueryRewriteRules.Rule> all() {
+        return rules.all();
+    }
+
+    public Optional<QueryRewriteRules.Rule> review(String query, QueryRewrite.Status status, String rewrite) {
+        Optional<QueryRewriteRules.Rule> reviewed = rules.review(query, status, rewrite);
+        reviewed.ifPresent(rule -> log.info("Query rewrite for '{}' marked {}: '{}'", rule.query(), status, rule.rewrite()));
+        return reviewed;
+    }
+
+    public boolean remove(String query) {
+        return rules.remove(query);
+    }
+
+    public int prune(double minConfidence, Duration unusedFor) {
+        int removed = rules.prune(minConfidence, LocalDateTime.now().minus(unusedFor));
+        log.info("Pruned {} learned query rewrites below confidence {} or unused for {}", removed, minConfidence, unusedFor);
+        return removed;
+    }
+
+    /**
+     * Writes the rules changed since the last flush in one transaction, falling back to one
+     * write per rule when that fails.
+     */
+    @Scheduled(fixedDelayString = "${smartcart.search.rewrites.flush-interval:10s}")
+    @PreDestroy
+    public void flush() {
+        Map<String, QueryRewriteRules.Rule> changes = rules.drainChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<QueryRewrite> saved = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        changes.forEach((query, rule) -> {
+            if (rule == null) {
+                removed.add(query);
+            } else {
+                saved.add(toEntity(rule));
+            }
+        });
+        try {
+            queryRewriteRepository.saveAll(saved);
+            queryRewriteRepository.deleteAllById(removed);
+            log.debug("Flushed {} changed and {} removed query rewrites", saved.size(), removed.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} query rewrites in one batch, writing them one by one: {}",
+                    changes.size(), e.getMessage());
+            saved.forEach(entity -> writeOne(entity.getQuery(), () -> queryRewriteRepository.save(entity)));
+            removed.forEach(query -> writeOne(query, () -> queryRewriteRepository.deleteById(query)));
+        }
+    }
+
+    /**
+     * A rule the table rejects is dropped from the write-behind rather than retried forever,
+     * which would block every other change; other failures are retried on the next flush.
+     */
+    private void writeOne(String query, Runnable write) {
+        try {
+            write.run();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Dropping query rewrite for '{}' that cannot be stored: {}", query, e.getMessage());
+        } catch (RuntimeException e) {
+            rules.markChanged(Set.of(query));
+        }
+    }
+
+    private static QueryRewriteRules.Rule toRule(QueryRewrite entity) {
+        return new QueryRewriteRules.Rule(entity.getQuery(), entity.getRewrite(), entity.getStatus(),
+                entity.getSuccessCount(), entity.getFailureCount(), entity.getCreatedAt(), entity.getLastUsedAt());
+    }
+
+    private static QueryRewrite toEntity(QueryRewriteRules.Rule rule) {
+        return new QueryRewrite(rule.query(), rule.rewrite(), rule.status(), rule.successes(), rule.failures(),
+                rule.createdAt(), rule.lastUsedAt());
+    }
+}
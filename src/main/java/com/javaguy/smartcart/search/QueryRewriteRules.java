@@ -0,0 +1,227 @@
+package com.javaguy.smartcart.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.javaguy.smartcart.entity.QueryRewrite;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory query rewrite dictionary: normalized query -> the keywords that found products for
+ * it. Rules are immutable and replaced on every change, and every changed or removed query is
+ * remembered until {@link #drainChanges()} hands it to whoever persists the rules.
+ *
+ * A learned rule is weighted by how often its rewrite found products, as the smoothed success
+ * rate {@code (successes + 1) / (uses + 2)}: one success gives 0.67, a success followed by two
+ * misses 0.4. It applies while that stays at or above {@code minConfidence}. Approved rules
+ * always apply, rejected ones never do and are not relearned.
+ */
+public class QueryRewriteRules {
+
+    /** Longest key and rewrite the {@code query_rewrites} table holds; longer ones are not kept. */
+    public static final int MAX_QUERY_LENGTH = 500;
+    public static final int MAX_REWRITE_LENGTH = 1000;
+
+    public record Rule(String query, String rewrite, QueryRewrite.Status status, int successes, int failures,
+                       LocalDateTime createdAt, LocalDateTime lastUsedAt) {
+
+        @JsonProperty("confidence")
+        public double confidence() {
+            return (successes + 1.0) / (successes + failures + 2.0);
+        }
+
+        Rule withOutcome(boolean found, LocalDateTime now) {
+            return new Rule(query, rewrite, status, successes + (found ? 1 : 0), failures + (found ? 0 : 1),
+                    createdAt, now);
+        }
+    }
+
+    private final double minConfidence;
+    private final int maxRules;
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    public QueryRewriteRules(double minConfidence, int maxRules) {
+        this.minConfidence = minConfidence;
+        this.maxRules = maxRules;
+    }
+
+    /**
+     * The dictionary key of a query: its distinct tokens in sorted order, so "Headphones cheap"
+     * and "cheap headphones" are one intent.
+     */
+    public static String key(String query) {
+        return String.join(" ", new TreeSet<>(TextAnalyzer.tokenize(query)));
+    }
+
+    /**
+     * The rewrite to expand the query with, if a rule for it applies.
+     */
+    public Optional<String> rewrite(String query) {
+        Rule rule = rules.get(key(query));
+        if (rule == null) {
+            return Optional.empty();
+        }
+        boolean applies = switch (rule.status()) {
+            case APPROVED -> true;
+            case REJECTED -> false;
+            case LEARNED -> rule.successes() > 0 && rule.confidence() >= minConfidence;
+        };
+        return applies ? Optional.of(rule.rewrite()) : Optional.empty();
+    }
+
+    /**
+     * Counts whether the applied rewrite for the query found products.
+     */
+    public void recordOutcome(String query, boolean found) {
+        String key = key(query);
+        if (rules.computeIfPresent(key, (k, rule) -> rule.withOutcome(found, LocalDateTime.now())) != null) {
+            changed.add(key);
+        }
+    }
+
+    /**
+     * Records keywords the chat model suggested for the query and whether they found products.
+     * Repeating the current rewrite counts as a use of it; a different one replaces a learned
+     * rule only when it found products or the rule never did. Reviewed rules keep their rewrite,
+     * and no new rules are learned beyond {@code maxRules} or for queries and rewrites too long
+     * to store.
+     */
+    public void learn(String query, String suggestedKeywords, boolean found) {
+        String key = key(query);
+        String rewrite = String.join(" ", new LinkedHashSet<>(TextAnalyzer.tokenize(suggestedKeywords)));
+        if (!storableKey(key) || !storableRewrite(rewrite)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Rule learned = new Rule(key, rewrite, QueryRewrite.Status.LEARNED, found ? 1 : 0, found ? 0 : 1, now, now);
+        Rule result = rules.compute(key, (k, rule) -> {
+            if (rule == null) {
+                return rules.size() < maxRules ? learned : null;
+            }
+            if (rule.rewrite().equals(rewrite)) {
+                return rule.withOutcome(found, now);
+            }
+            if (rule.status() == QueryRewrite.Status.LEARNED && (found || rule.successes() == 0)) {
+                return learned;
+            }
+            return rule;
+        });
+        if (result != null) {
+            changed.add(key);
+        }
+    }
+
+    private static boolean storableKey(String key) {
+        return !key.isEmpty() && key.length() <= MAX_QUERY_LENGTH;
+    }
+
+    private static boolean storableRewrite(String rewrite) {
+        return !rewrite.isEmpty() && rewrite.length() <= MAX_REWRITE_LENGTH;
+    }
+
+    /**
+     * Sets the status of the rule for the query, and its rewrite when one is given. A query
+     * without a rule gets one only when a rewrite is given. Queries and rewrites too long to
+     * store are refused.
+     */
+    public Optional<Rule> review(String query, QueryRewrite.Status status, String rewrite) {
+        String key = key(query);
+        String normalizedRewrite = rewrite == null ? null
+                : String.join(" ", new LinkedHashSet<>(TextAnalyzer.tokenize(rewrite)));
+        if (!storableKey(key) || (normalizedRewrite != null && !storableRewrite(normalizedRewrite))) {
+            return Optional.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Rule result = rules.compute(key, (k, rule) -> {
+            if (rule == null) {
+                return normalizedRewrite == null ? null : new Rule(key, normalizedRewrite, status, 0, 0, now, null);
+            }
+            // a new rewrite starts counting from scratch
+            return normalizedRewrite == null || normalizedRewrite.equals(rule.rewrite())
+                    ? new Rule(key, rule.rewrite(), status, rule.successes(), rule.failures(), rule.createdAt(), rule.lastUsedAt())
+                    : new Rule(key, normalizedRewrite, status, 0, 0, rule.createdAt(), rule.lastUsedAt());
+        });
+        if (result != null) {
+            changed.add(key);
+        }
+        return Optional.ofNullable(result);
+    }
+
+    public boolean remove(String query) {
+        String key = key(query);
+        if (rules.remove(key) == null) {
+            return false;
+        }
+        changed.add(key);
+        return true;
+    }
+
+    /**
+     * Removes the learned rules whose confidence is below {@code minConfidence}, or that were
+     * last used (or, if never used, learned) before {@code unusedSince}. Reviewed rules stay.
+     */
+    public int prune(double minConfidence, LocalDateTime unusedSince) {
+        int removed = 0;
+        for (Rule rule : rules.values()) {
+            LocalDateTime lastUsed = rule.lastUsedAt() != null ? rule.lastUsedAt() : rule.createdAt();
+            if (rule.status() == QueryRewrite.Status.LEARNED
+                    && (rule.confidence() < minConfidence || lastUsed.isBefore(unusedSince))
+                    && rules.remove(rule.query(), rule)) {
+                changed.add(rule.query());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * All rules, the most used first.
+     */
+    public List<Rule> all() {
+        List<Rule> all = new ArrayList<>(rules.values());
+        all.sort(Comparator.comparingInt((Rule rule) -> rule.successes() + rule.failures()).reversed()
+                .thenComparing(Rule::query));
+        return all;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * Adds rules read back from storage; rules changed since startup win.
+     */
+    public void load(List<Rule> stored) {
+        stored.forEach(rule -> rules.putIfAbsent(rule.query(), rule));
+    }
+
+    /**
+     * The queries changed since the last call, mapped to their current rule or to null when the
+     * rule was removed. A change racing with this call is reported now or on the next call.
+     */
+    public Map<String, Rule> drainChanges() {
+        Map<String, Rule> changes = new LinkedHashMap<>();
+        for (String key : changed) {
+            changed.remove(key);
+            changes.put(key, rules.get(key));
+        }
+        return changes;
+    }
+
+    /**
+     * Reports the queries again on the next {@link #drainChanges()}, after a failed write.
+     */
+    public void markChanged(Set<String> keys) {
+        changed.addAll(keys);
+    }
+}
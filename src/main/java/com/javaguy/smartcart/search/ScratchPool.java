@@ -0,0 +1,33 @@
+package com.javaguy.smartcart.search;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A few reusable scratch buffers for the index searches. Searches run on short-lived virtual
+ * threads, so thread-local buffers would be allocated again, catalog-sized, for every query;
+ * instead a search borrows a buffer and hands it back clean. Buffers beyond {@code capacity}
+ * are left to the garbage collector, and a search that fails simply does not return its buffer.
+ */
+final class ScratchPool<T> {
+
+    private final ArrayBlockingQueue<T> pool;
+    private final Supplier<T> factory;
+
+    ScratchPool(int capacity, Supplier<T> factory) {
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+    }
+
+    T acquire() {
+        T scratch = pool.poll();
+        return scratch != null ? scratch : factory.get();
+    }
+
+    /**
+     * Returns a buffer that the caller has reset to its initial state.
+     */
+    void release(T scratch) {
+        pool.offer(scratch);
+    }
+}
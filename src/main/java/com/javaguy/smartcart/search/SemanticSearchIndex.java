@@ -0,0 +1,270 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.llm.ChatGateway;
+import com.javaguy.smartcart.llm.LlmOperation;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding-based product search. Product texts are embedded in batches with the configured
+ * embedding model (nomic-embed-text through Ollama by default, or the deterministic
+ * {@link LocalHashingEmbeddingModel}) and kept in an in-memory {@link HnswIndex}, so a
+ * semantic query costs one embedding call plus a k-NN lookup. The query embedding is a model
+ * call on the request path, so it goes through the {@link ChatGateway}'s timeout, bulkhead and
+ * circuit breaker like any chat call.
+ *
+ * Building and incremental updates run on a single background thread: startup is not held
+ * up by thousands of embedding calls and product writes never wait on Ollama. The provider
+ * {@code none} disables the index, leaving semantic search to the chat model.
+ *
+ * With snapshots enabled the graph is saved after it is built and on shutdown, keyed by the
+ * embedding model and the catalog's content fingerprint, so a restart with an unchanged catalog
+ * makes no embedding calls at all.
+ */
+@Component
+public class SemanticSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticSearchIndex.class);
+    private static final int HNSW_M = 16;
+    private static final int HNSW_EF_CONSTRUCTION = 100;
+    private static final String SNAPSHOT_NAME = "hnsw";
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogStore catalogStore;
+    private final IndexSnapshotStore snapshotStore;
+    private final ChatGateway chatGateway;
+    private final EmbeddingModel embeddingModel;
+    private final String embeddingModelName;
+    private final int batchSize;
+    private final int efSearch;
+    private final float minSimilarity;
+    private final ExecutorService indexer =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("semantic-indexer").factory());
+
+    private volatile HnswIndex index;
+    private volatile boolean ready;
+    // set when saved products could not be embedded; such an index must not be saved as current
+    private volatile boolean missedUpdates;
+    // key of the snapshot on disk that matches the index, only touched by the indexer thread
+    private String savedSnapshotKey;
+    // whether a build got through the whole catalog, only touched by the indexer thread
+    private boolean built;
+
+    public SemanticSearchIndex(ProductRepository productRepository,
+                               TransactionTemplate transactionTemplate,
+                               CatalogStore catalogStore,
+                               IndexSnapshotStore snapshotStore,
+                               ChatGateway chatGateway,
+                               ObjectProvider<EmbeddingModel> embeddingModels,
+                               @Value("${smartcart.semantic.embedding-provider:ollama}") String provider,
+                               @Value("${spring.ai.ollama.embedding.model:}") String ollamaModel,
+                               @Value("${smartcart.semantic.local-dimensions:256}") int localDimensions,
+                               @Value("${smartcart.semantic.batch-size:32}") int batchSize,
+                               @Value("${smartcart.semantic.ef-search:64}") int efSearch,
+                               @Value("${smartcart.semantic.min-similarity:0.35}") float minSimilarity) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.catalogStore = catalogStore;
+        this.snapshotStore = snapshotStore;
+        this.chatGateway = chatGateway;
+        this.embeddingModel = switch (provider.toLowerCase()) {
+            case "none" -> null;
+            case "local" -> new LocalHashingEmbeddingModel(localDimensions);
+            default -> embeddingModels.getObject();
+        };
+        this.embeddingModelName = switch (provider.toLowerCase()) {
+            case "local" -> "local" + localDimensions;
+            default -> provider.toLowerCase() + "-" + ollamaModel;
+        };
+        this.batchSize = batchSize;
+        this.efSearch = efSearch;
+        this.minSimilarity = minSimilarity;
+        log.info("SemanticSearchIndex using {} embedding provider", provider);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (embeddingModel == null) {
+            return;
+        }
+        indexer.execute(this::buildIndex);
+    }
+
+    /**
+     * Embeds the saved products into the index. Until a build has got through the whole catalog
+     * the build is retried instead, since the index would be missing the products it failed on.
+     */
+    @EventListener
+    public void onProductsSaved(ProductsSavedEvent event) {
+        if (embeddingModel == null) {
+            return;
+        }
+        List<ProductText> texts = event.products().stream().map(ProductText::of).toList();
+        indexer.execute(() -> {
+            if (!built) {
+                buildIndex();
+                return;
+            }
+            try {
+                for (int from = 0; from < texts.size(); from += batchSize) {
+                    embedAndAdd(texts.subList(from, Math.min(texts.size(), from + batchSize)));
+                }
+                // the catalog may have been empty when the index was built
+                ready = index != null;
+            } catch (RuntimeException e) {
+                missedUpdates = true;
+                log.warn("Failed to embed {} saved products: {}", texts.size(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Product ids most similar to the query, best first, excluding weak matches. Throws
+     * {@link com.javaguy.smartcart.llm.LlmUnavailableException} when the query cannot be embedded.
+     */
+    public List<Long> search(String query, int limit) {
+        HnswIndex current = index;
+        if (current == null) {
+            return List.of();
+        }
+        // the local model is plain arithmetic and must not count towards the breaker's statistics
+        float[] queryVector = embeddingModel instanceof LocalHashingEmbeddingModel
+                ? embeddingModel.embed(query)
+                : chatGateway.embed(LlmOperation.SEARCH_EMBEDDING, embeddingModel, query);
+        return current.search(queryVector, limit, efSearch).stream()
+                .filter(match -> match.similarity() >= minSimilarity)
+                .map(HnswIndex.Match::id)
+                .toList();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Saves the index once the updates queued before shutdown are embedded, waiting at most
+     * {@value #SHUTDOWN_WAIT_SECONDS} seconds for them.
+     */
+    @PreDestroy
+    void shutdown() {
+        if (snapshotStore.isEnabled()) {
+            indexer.execute(() -> {
+                String snapshotKey = snapshotKey();
+                if (ready && !missedUpdates && !snapshotKey.equals(savedSnapshotKey)) {
+                    snapshotStore.save(SNAPSHOT_NAME, snapshotKey, index::writeTo);
+                }
+            });
+        }
+        indexer.shutdown();
+        try {
+            if (!indexer.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                indexer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            indexer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void buildIndex() {
+        long startTime = System.currentTimeMillis();
+        try {
+            String snapshotKey = snapshotKey();
+            Optional<HnswIndex> snapshot = snapshotStore.load(SNAPSHOT_NAME, snapshotKey, HnswIndex::readFrom);
+            if (snapshot.isPresent()) {
+                index = snapshot.get();
+                savedSnapshotKey = snapshotKey;
+                built = true;
+                ready = true;
+                log.info("Semantic index loaded from snapshot in {}ms with {} products",
+                        System.currentTimeMillis() - startTime, index.size());
+                return;
+            }
+            // a retry starts over rather than trusting what a failed build left behind
+            index = null;
+            int page = 0;
+            List<ProductText> batch;
+            do {
+                batch = loadPage(page++);
+                embedAndAdd(batch);
+            } while (batch.size() == batchSize);
+            built = true;
+            ready = index != null;
+            log.info("Semantic index built in {}ms with {} products",
+                    System.currentTimeMillis() - startTime, index == null ? 0 : index.size());
+            if (ready && snapshotStore.isEnabled()) {
+                // products saved during the build are queued behind this task and change the
+                // catalog fingerprint, so a snapshot keyed by the earlier catalog stays correct
+                snapshotStore.save(SNAPSHOT_NAME, snapshotKey, index::writeTo);
+                savedSnapshotKey = snapshotKey;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Semantic index build failed, semantic search will use the chat model: {}", e.getMessage());
+        }
+    }
+
+    private String snapshotKey() {
+        return "hnsw-v" + SNAPSHOT_FORMAT + "-" + embeddingModelName + "-"
+                + Long.toHexString(catalogStore.snapshot().contentFingerprint());
+    }
+
+    private List<ProductText> loadPage(int page) {
+        return transactionTemplate.execute(status -> {
+            Page<Product> products = productRepository.findAll(PageRequest.of(page, batchSize, Sort.by("id")));
+            return products.stream().map(ProductText::of).toList();
+        });
+    }
+
+    private void embedAndAdd(List<ProductText> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<float[]> vectors = embeddingModel.embed(batch.stream().map(ProductText::text).toList());
+        if (index == null) {
+            index = new HnswIndex(vectors.get(0).length, HNSW_M, HNSW_EF_CONSTRUCTION);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            index.add(batch.get(i).id(), vectors.get(i));
+        }
+    }
+
+    private record ProductText(long id, String text) {
+        static ProductText of(Product product) {
+            List<String> parts = new ArrayList<>();
+            parts.add(product.getName());
+            parts.add(product.getCategory());
+            parts.add(product.getBrand());
+            parts.add(product.getDescription());
+            if (product.getTags() != null) {
+                parts.addAll(product.getTags());
+            }
+            parts.removeIf(part -> part == null || part.isBlank());
+            return new ProductText(product.getId(), String.join(". ", parts));
+        }
+    }
+}
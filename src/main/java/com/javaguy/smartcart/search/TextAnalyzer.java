@@ -0,0 +1,54 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.entity.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer shared by the in-memory search structures: lowercases and splits on anything
+ * that is not a letter or digit, so "High-performance" becomes [high, performance].
+ */
+public final class TextAnalyzer {
+
+    private TextAnalyzer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.isLetterOrDigit(lower.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(lower.substring(start));
+        }
+        return tokens;
+    }
+
+    /**
+     * All searchable text of a product, in the order the fields were matched by the
+     * old JPQL search (name, description, category) followed by brand and tags.
+     */
+    public static List<String> tokenize(Product product) {
+        List<String> tokens = tokenize(product.getName());
+        tokens.addAll(tokenize(product.getDescription()));
+        tokens.addAll(tokenize(product.getCategory()));
+        tokens.addAll(tokenize(product.getBrand()));
+        if (product.getTags() != null) {
+            product.getTags().forEach(tag -> tokens.addAll(tokenize(tag)));
+        }
+        return tokens;
+    }
+}
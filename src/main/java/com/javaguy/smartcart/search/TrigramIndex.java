@@ -0,0 +1,348 @@
+package com.javaguy.smartcart.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant term lookup: every distinct term of the indexed texts is split into padded
+ * trigrams ("shoe" -> "  s", " sh", "sho", "hoe", "oe "), and a misspelled query term is
+ * compared only with the terms that share enough trigrams with it. An insertion, deletion or
+ * substitution changes at most three trigrams and swapping two neighbours at most four, so a
+ * term within {@code k} edits shares at least {@code trigrams(query) - 4k} of them; the
+ * survivors of that filter are verified with an edit distance (adjacent transpositions count
+ * as one edit).
+ *
+ * Products are ranked by the sum, over the query terms, of the best similarity
+ * {@code 1 - distance / length} of any of their terms, so a product matching more query
+ * terms with fewer edits comes first.
+ */
+public class TrigramIndex {
+
+    private static final int[] NO_TERMS = new int[0];
+    private static final int TRIGRAMS_PER_EDIT = 4;
+
+    private static final int POOLED_SCRATCH = 16;
+
+    private static final ScratchPool<Scratch> SCRATCH = new ScratchPool<>(POOLED_SCRATCH, Scratch::new);
+
+    public record Match(long productId, double score) {}
+
+    private final int maxEdits;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    // product ordinals per term id
+    private final List<IntList> productsByTerm = new ArrayList<>();
+    private final Map<String, IntList> termsByTrigram = new HashMap<>();
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    private long[] productIds = new long[64];
+    private int[][] termsByProduct = new int[64][];
+    private int productCount;
+
+    /**
+     * @param maxEdits upper bound on the edits tolerated per term; shorter terms get fewer
+     */
+    public TrigramIndex(int maxEdits) {
+        this.maxEdits = maxEdits;
+    }
+
+    /**
+     * Indexes the product under the given terms, replacing what it was indexed under before.
+     * A product keeps its ordinal across updates, so nothing is ever tombstoned.
+     */
+    public void add(long productId, List<String> productTerms) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinalById.get(productId);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                for (int termId : termsByProduct[ordinal]) {
+                    productsByTerm.get(termId).remove(ordinal);
+                }
+            } else {
+                ordinal = productCount++;
+                if (ordinal == productIds.length) {
+                    productIds = Arrays.copyOf(productIds, ordinal * 2);
+                    termsByProduct = Arrays.copyOf(termsByProduct, ordinal * 2);
+                }
+                productIds[ordinal] = productId;
+                ordinalById.put(productId, ordinal);
+            }
+            LinkedHashSet<String> distinct = new LinkedHashSet<>(productTerms);
+            int[] ids = new int[distinct.size()];
+            int next = 0;
+            for (String term : distinct) {
+                int termId = termId(term);
+                productsByTerm.get(termId).add(ordinal);
+                ids[next++] = termId;
+            }
+            termsByProduct[ordinal] = ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} products whose terms match the query terms within the allowed edits,
+     * best first, ties going to the lower product id. Query terms shorter than three characters
+     * only match exactly.
+     */
+    public List<Match> search(List<String> queryTerms, int limit) {
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Scratch scratch = SCRATCH.acquire();
+            scratch.ensureCapacity(terms.size(), productCount);
+            float[] best = scratch.best;
+            float[] scores = scratch.scores;
+            int[] scored = new int[16];
+            int scoredCount = 0;
+            for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+                int[] matched = new int[16];
+                int matchedCount = 0;
+                for (int termId : candidates(queryTerm, scratch.shared)) {
+                    String term = terms.get(termId);
+                    int distance = editDistance(queryTerm, term, allowedEdits(queryTerm));
+                    if (distance < 0) {
+                        continue;
+                    }
+                    // at least 1/3: a term with edits has three or more characters
+                    float similarity = 1 - (float) distance / Math.max(queryTerm.length(), term.length());
+                    IntList postings = productsByTerm.get(termId);
+                    for (int i = 0; i < postings.size; i++) {
+                        int ordinal = postings.values[i];
+                        if (best[ordinal] == 0f) {
+                            if (matchedCount == matched.length) {
+                                matched = Arrays.copyOf(matched, matchedCount * 2);
+                            }
+                            matched[matchedCount++] = ordinal;
+                        }
+                        best[ordinal] = Math.max(best[ordinal], similarity);
+                    }
+                }
+                // each query term counts once per product, with its closest match
+                for (int i = 0; i < matchedCount; i++) {
+                    int ordinal = matched[i];
+                    if (scores[ordinal] == 0f) {
+                        if (scoredCount == scored.length) {
+                            scored = Arrays.copyOf(scored, scoredCount * 2);
+                        }
+                        scored[scoredCount++] = ordinal;
+                    }
+                    scores[ordinal] += best[ordinal];
+                    best[ordinal] = 0f;
+                }
+            }
+            List<Match> results = top(scores, scored, scoredCount, limit);
+            for (int i = 0; i < scoredCount; i++) {
+                scores[scored[i]] = 0f;
+            }
+            SCRATCH.release(scratch);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Edits tolerated for a term of this length: none below three characters, one up to
+     * five and {@code maxEdits} beyond, the usual scale for keyboard typos.
+     */
+    int allowedEdits(String term) {
+        int length = term.length();
+        if (length < 3) {
+            return 0;
+        }
+        return Math.min(maxEdits, length <= 5 ? 1 : 2);
+    }
+
+    private List<Match> top(float[] scores, int[] scored, int scoredCount, int limit) {
+        Comparator<Integer> worstFirst = (a, b) -> scores[a] != scores[b]
+                ? Float.compare(scores[a], scores[b])
+                : Long.compare(productIds[b], productIds[a]);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(worstFirst);
+        for (int i = 0; i < scoredCount; i++) {
+            int ordinal = scored[i];
+            if (heap.size() < limit) {
+                heap.add(ordinal);
+            } else if (worstFirst.compare(ordinal, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(ordinal);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(heap);
+        ranked.sort(worstFirst.reversed());
+        return ranked.stream().map(ordinal -> new Match(productIds[ordinal], scores[ordinal])).toList();
+    }
+
+    /**
+     * Ids of the terms that can be within the allowed edits of {@code queryTerm}; terms no
+     * product uses any more are skipped.
+     */
+    private int[] candidates(String queryTerm, int[] shared) {
+        int edits = allowedEdits(queryTerm);
+        if (edits == 0) {
+            Integer exact = termIds.get(queryTerm);
+            return exact == null || productsByTerm.get(exact).size == 0 ? NO_TERMS : new int[]{exact};
+        }
+        LinkedHashSet<String> queryTrigrams = new LinkedHashSet<>(trigrams(queryTerm));
+        int required = Math.max(1, queryTrigrams.size() - TRIGRAMS_PER_EDIT * edits);
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (String trigram : queryTrigrams) {
+            IntList postings = termsByTrigram.get(trigram);
+            if (postings == null) {
+                continue;
+            }
+            for (int p = 0; p < postings.size; p++) {
+                int termId = postings.values[p];
+                if (shared[termId]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = termId;
+                }
+            }
+        }
+        int[] result = new int[touchedCount];
+        int resultCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int termId = touched[i];
+            if (shared[termId] >= required
+                    && Math.abs(terms.get(termId).length() - queryTerm.length()) <= edits
+                    && productsByTerm.get(termId).size > 0) {
+                result[resultCount++] = termId;
+            }
+            shared[termId] = 0;
+        }
+        return Arrays.copyOf(result, resultCount);
+    }
+
+    /**
+     * Terms keep their trigram entries when their last product goes; they are skipped as
+     * candidates and reused if the term comes back.
+     */
+    private int termId(String term) {
+        Integer existing = termIds.get(term);
+        if (existing != null) {
+            return existing;
+        }
+        int termId = terms.size();
+        terms.add(term);
+        termIds.put(term, termId);
+        productsByTerm.add(new IntList());
+        for (String trigram : new LinkedHashSet<>(trigrams(term))) {
+            termsByTrigram.computeIfAbsent(trigram, t -> new IntList()).add(termId);
+        }
+        return termId;
+    }
+
+    static List<String> trigrams(String term) {
+        String padded = "  " + term + " ";
+        List<String> trigrams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Optimal string alignment distance between {@code a} and {@code b}, or -1 as soon as it is
+     * certain to exceed {@code limit}.
+     */
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return -1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        int previousRowMinimum = 0;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            // later rows build on this row, or on the previous one plus a transposition
+            if (rowMinimum > limit && previousRowMinimum >= limit) {
+                return -1;
+            }
+            previousRowMinimum = rowMinimum;
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        int distance = previous[b.length()];
+        return distance <= limit ? distance : -1;
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pooled work arrays indexed by term id or product ordinal; every search leaves them zeroed.
+     */
+    private static final class Scratch {
+        int[] shared = new int[0];
+        float[] best = new float[0];
+        float[] scores = new float[0];
+
+        void ensureCapacity(int termCount, int productCount) {
+            if (shared.length < termCount) {
+                shared = new int[Math.max(termCount, shared.length * 2)];
+            }
+            if (best.length < productCount) {
+                best = new float[Math.max(productCount, best.length * 2)];
+                scores = new float[best.length];
+            }
+        }
+    }
+}
@@ -1,90 +1,331 @@
 package com.javaguy.smartcart.service;
 
+import com.javaguy.smartcart.catalog.CatalogSnapshot;
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.ProductView;
 import com.javaguy.smartcart.entity.Customer;
 import com.javaguy.smartcart.repository.CustomerRepository;
 import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.llm.ChatGateway;
+import com.javaguy.smartcart.llm.LlmOperation;
+import com.javaguy.smartcart.llm.PromptBuilder;
+import com.javaguy.smartcart.recommendation.CoPurchaseRecommender;
 import com.javaguy.smartcart.repository.ProductRepository;
+import com.javaguy.smartcart.search.ProductNameMatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
-import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class AIRecommendationService {
 
     private static final Logger log = LoggerFactory.getLogger(AIRecommendationService.class);
-    private final OllamaChatModel chatModel;
+    private static final int MAX_RECOMMENDATIONS = 5;
+    private static final int FALLBACK_RECOMMENDATIONS = 5;
+
+    /**
+     * Where personalized recommendations come from. With CO_PURCHASE the chat model is only asked
+     * about customers the co-purchase matrix knows nothing useful about; BLENDED also asks it to
+     * fill the remaining places when co-purchases give fewer than the maximum.
+     */
+    enum Source { LLM, CO_PURCHASE, BLENDED }
+
+    private final ChatGateway chatGateway;
     private final ProductRepository productRepository;
     private final CustomerRepository customerRepository;
+    private final ProductNameMatcher productNameMatcher;
+    private final CatalogStore catalogStore;
+    private final CoPurchaseRecommender coPurchaseRecommender;
+    private final PromptBuilder promptBuilder;
+    private final int maxCandidates;
+    private final Source source;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
 
-    public AIRecommendationService(OllamaChatModel chatModel, ProductRepository productRepository, CustomerRepository customerRepository) {
-        this.chatModel = chatModel;
+    public AIRecommendationService(ChatGateway chatGateway, ProductRepository productRepository, CustomerRepository customerRepository,
+                                   ProductNameMatcher productNameMatcher, CatalogStore catalogStore,
+                                   CoPurchaseRecommender coPurchaseRecommender, PromptBuilder promptBuilder,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${smartcart.recommendations.source:co-purchase}") String source,
+                                   @Value("${smartcart.llm.prompt.max-candidates:40}") int maxCandidates) {
+        this.chatGateway = chatGateway;
         this.productRepository = productRepository;
         this.customerRepository = customerRepository;
-        log.info("AIRecommendationService initialized with ollama chat model and product repository");
+        this.productNameMatcher = productNameMatcher;
+        this.catalogStore = catalogStore;
+        this.coPurchaseRecommender = coPurchaseRecommender;
+        this.promptBuilder = promptBuilder;
+        this.maxCandidates = maxCandidates;
+        this.source = Source.valueOf(source.toUpperCase().replace('-', '_'));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        log.info("AIRecommendationService initialized with {} recommendations", this.source);
     }
 
-    public List<Product> getPersonalizedRecommendations(long customerId){
+    public List<ProductView> getPersonalizedRecommendations(long customerId){
         log.info("Generating personalized recommendations for customer with id: {}", customerId);
+        return timed("personalized", () -> {
+            List<ProductView> coPurchased = source == Source.LLM ? List.of() : coPurchaseRecommendations(customerId);
+            if (coPurchasesSuffice(coPurchased)) {
+                countSource("co-purchase");
+                return coPurchased;
+            }
+            Prompt recommendationPrompt = createRecommendationPrompt(customerId);
+            String aiResponse = chatGateway.call(LlmOperation.RECOMMENDATION, recommendationPrompt)
+                    .getResult().getOutput().getText();
+            return withModelRecommendations(coPurchased, parseRecommendationsAndFindProducts(aiResponse));
+        });
+    }
+
+    /**
+     * Whether the configured source lets co-purchases answer without asking the chat model.
+     */
+    private boolean coPurchasesSuffice(List<ProductView> coPurchased) {
+        return coPurchased.size() >= MAX_RECOMMENDATIONS || (source == Source.CO_PURCHASE && !coPurchased.isEmpty());
+    }
+
+    /**
+     * The model's recommendations, after the co-purchases when there are any.
+     */
+    private List<ProductView> withModelRecommendations(List<ProductView> coPurchased, List<ProductView> fromModel) {
+        if (coPurchased.isEmpty()) {
+            countSource("llm");
+            return fromModel;
+        }
+        countSource("blended");
+        List<ProductView> blended = new ArrayList<>(coPurchased);
+        fromModel.stream()
+                .filter(product -> blended.stream().noneMatch(existing -> existing.id().equals(product.id())))
+                .limit(MAX_RECOMMENDATIONS - coPurchased.size())
+                .forEach(blended::add);
+        return blended;
+    }
+
+    /**
+     * Products bought together with the customer's own purchases, from the in-memory
+     * co-purchase matrix; no model call and no database query.
+     */
+    private List<ProductView> coPurchaseRecommendations(long customerId) {
+        return catalogStore.snapshot().getAll(coPurchaseRecommender.recommendFor(customerId, MAX_RECOMMENDATIONS));
+    }
+
+    private void countSource(String recommendationSource) {
+        meterRegistry.counter("smartcart.recommendations.source", "source", recommendationSource).increment();
+    }
+
+    /**
+     * Recommendations without the chat model, for when it is unavailable: co-purchases when there
+     * are any, otherwise products from the customer's preferred categories and from the
+     * categories they have bought from, leaving out what they already bought.
+     */
+    public List<ProductView> fallbackRecommendations(long customerId) {
+        meterRegistry.counter("smartcart.llm.fallbacks", "operation", "recommendation").increment();
+        List<ProductView> coPurchased = coPurchaseRecommendations(customerId);
+        if (!coPurchased.isEmpty()) {
+            return coPurchased;
+        }
+        CatalogSnapshot catalog = catalogStore.snapshot();
+        List<Long> productIds = readOnlyTransaction.execute(status -> {
+            Customer customer = customerRepository.findById(customerId)
+                    .orElseThrow(() -> new RuntimeException("Customer not found"));
+            List<Long> purchased = customer.getPurchaseHistory();
+            Set<String> categories = new LinkedHashSet<>();
+            customer.getPreferences().forEach(preference -> categories.add(preference.toLowerCase()));
+            catalog.getAll(purchased).stream()
+                    .map(ProductView::category)
+                    .filter(Objects::nonNull)
+                    .forEach(category -> categories.add(category.toLowerCase()));
+            if (categories.isEmpty()) {
+                return List.<Long>of();
+            }
+            return productRepository.findIdsByCategoryIn(categories,
+                            PageRequest.of(0, FALLBACK_RECOMMENDATIONS + purchased.size())).stream()
+                    .filter(id -> !purchased.contains(id))
+                    .limit(FALLBACK_RECOMMENDATIONS)
+                    .toList();
+        });
+        log.info("Fallback recommendations for customer {}: {}", customerId, productIds);
+        return catalog.getAll(productIds);
+    }
+
+    /**
+     * Recommendations from the same sources as {@link #getPersonalizedRecommendations(long)},
+     * without blocking on the chat model: co-purchases are available at once, and only otherwise
+     * is the model's answer, a JSON list of product ids, streamed and collected. The customer is
+     * looked up before the result is returned, so an unknown id fails the same way as the
+     * blocking call.
+     */
+    public Mono<List<ProductView>> streamPersonalizedRecommendations(long customerId) {
+        log.info("Streaming personalized recommendations for customer with id: {}", customerId);
+        List<ProductView> coPurchased = source == Source.LLM ? List.of() : coPurchaseRecommendations(customerId);
+        if (coPurchasesSuffice(coPurchased)) {
+            countSource("co-purchase");
+            return Mono.just(coPurchased);
+        }
+        Prompt recommendationPrompt = createRecommendationPrompt(customerId);
+        return timedStream("personalized-stream", chatGateway.stream(LlmOperation.RECOMMENDATION, recommendationPrompt))
+                .collect(Collectors.joining())
+                .map(aiResponse -> withModelRecommendations(coPurchased, findRecommendedProducts(aiResponse)));
+    }
+
+    /**
+     * Runs outside the request's open session (at the end of a stream), so the products come
+     * from the catalog snapshot rather than the database.
+     */
+    List<ProductView> findRecommendedProducts(String aiResponse) {
+        return timed("find-products", () -> parseRecommendationsAndFindProducts(aiResponse));
+    }
+
+    /**
+     * Loads the customer's lazy collections in a short read-only transaction so the prompt can
+     * also be built from background threads, without holding a connection during the model call.
+     */
+    public Prompt createRecommendationPrompt(long customerId) {
+        return readOnlyTransaction.execute(status -> loadProfileAndCreatePrompt(customerId));
+    }
+
+    private Prompt loadProfileAndCreatePrompt(long customerId) {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
-        //get the products they have purchased
-        List<Product> purchasedProducts = customer.getPurchaseHistory().stream()
-                .map(productRepository::findById)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .toList();
-        log.info("Customer has {} purchased products: {}", purchasedProducts.size(),
-                purchasedProducts.stream().map(Product::getName).toList());
+        CatalogSnapshot catalog = catalogStore.snapshot();
+        //get the products they have purchased, most recent first
+        List<Long> purchaseHistory = new ArrayList<>(customer.getPurchaseHistory());
+        Collections.reverse(purchaseHistory);
+        List<ProductView> purchasedProducts = catalog.getAll(new ArrayList<>(new LinkedHashSet<>(purchaseHistory)));
+        log.info("Customer has {} purchased products", purchasedProducts.size());
         // generate ai powered recommendations
-        String recommendationPrompt = createRecommendationPrompt(customer, purchasedProducts);
-        log.debug("Recommendation prompt: {}", recommendationPrompt);
-        String aiResponse = chatModel.call(recommendationPrompt);
-        return parseRecommendationsAndFindProducts(aiResponse);
-    }
-
-    private String createRecommendationPrompt(Customer customer, List<Product> purchasedProducts) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append(("Based on the following customer profile and purchase history, recommend product categories and types that would interest them:\n"));
-        prompt.append("Customer: ").append(customer.getFirstName()).append(" ").append(customer.getLastName()).append("\n");
-        prompt.append("Preferences: ").append(String.join(", ", customer.getPreferences())).append("\n");
-        if (!purchasedProducts.isEmpty()){
-            prompt.append("Recent purchases:\n");
-            purchasedProducts.forEach(product ->
-                    prompt.append("_ ").append(product.getName())
-                                    .append(" (").append(product.getCategory())
-                                    .append("\n"));
+        Prompt recommendationPrompt = promptBuilder.recommendationPrompt(customer.getPreferences(), purchasedProducts,
+                candidates(catalog, customer.getPreferences(), purchasedProducts), MAX_RECOMMENDATIONS);
+        log.debug("Recommendation prompt: {}", recommendationPrompt.getContents());
+        return recommendationPrompt;
+    }
 
+    /**
+     * Products the model may pick from: not yet bought, from the customer's preferred categories
+     * and the categories they bought from, newest first and taken from each category in turn.
+     * Customers without either get the newest products of the whole catalog.
+     */
+    private List<ProductView> candidates(CatalogSnapshot catalog, List<String> preferences, List<ProductView> purchased) {
+        Set<String> wanted = new HashSet<>();
+        preferences.forEach(preference -> wanted.add(preference.toLowerCase()));
+        purchased.stream()
+                .map(ProductView::category)
+                .filter(Objects::nonNull)
+                .forEach(category -> wanted.add(category.toLowerCase()));
+        Set<Long> purchasedIds = new HashSet<>();
+        purchased.forEach(product -> purchasedIds.add(product.id()));
+        List<List<ProductView>> sources = new ArrayList<>();
+        catalog.categories().stream()
+                .filter(category -> wanted.contains(category.toLowerCase()))
+                .sorted()
+                .forEach(category -> sources.add(catalog.byCategory(category)));
+        if (sources.isEmpty()) {
+            sources.add(catalog.all());
         }
-        prompt.append("""
-                \nPlease suggest 3-5 product categories or specific product types 
-                that would complement their interests. Focus on categories like:
-                Electronics, Books, Toys, Fashion, Grocery, Beauty, Clothing, Sports
-                """);
-
-        return prompt.toString();
-
+        List<ProductView> candidates = new ArrayList<>(maxCandidates);
+        int[] next = new int[sources.size()];
+        boolean remaining = true;
+        while (candidates.size() < maxCandidates && remaining) {
+            remaining = false;
+            for (int i = 0; i < sources.size() && candidates.size() < maxCandidates; i++) {
+                List<ProductView> products = sources.get(i);
+                // lists are in id order, so the newest products are at the end
+                while (next[i] < products.size()) {
+                    ProductView product = products.get(products.size() - 1 - next[i]++);
+                    if (!purchasedIds.contains(product.id())) {
+                        candidates.add(product);
+                        remaining = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return candidates;
     }
 
-    private List<Product> parseRecommendationsAndFindProducts(String aiResponse){
-        List<Product> allProducts = productRepository.findAll();
-        return allProducts.stream()
-                .filter(product -> {
-                    String response = aiResponse.toLowerCase();
-                    return response.contains(product.getCategory().toLowerCase()) || response.contains(product.getName().toLowerCase());
-                })
-                .limit(5)
+    /**
+     * Reads the JSON id list the prompt asks for; a response that ignored the format is scanned
+     * for product names and categories instead, in one pass over the text.
+     */
+    private List<ProductView> parseRecommendationsAndFindProducts(String aiResponse){
+        CatalogSnapshot catalog = catalogStore.snapshot();
+        List<ProductView> recommended = catalog.getAll(PromptBuilder.parseIds(aiResponse)).stream()
+                .limit(MAX_RECOMMENDATIONS)
                 .toList();
+        if (!recommended.isEmpty()) {
+            return recommended;
+        }
+        return catalog.getAll(productNameMatcher.match(aiResponse, MAX_RECOMMENDATIONS));
     }
 
     public String generateProductDescription(Product product){
         log.info("Generating product description for product with id: {}", product.getId());
+        return timed("description",
+                () -> chatGateway.call(LlmOperation.DESCRIPTION, createDescriptionPrompt(product)).getResult().getOutput().getText());
+    }
+
+    public Flux<String> streamProductDescription(Product product) {
+        log.info("Streaming product description for product with id: {}", product.getId());
+        return timedStream("description-stream", chatGateway.stream(LlmOperation.DESCRIPTION, createDescriptionPrompt(product)));
+    }
+
+    /**
+     * Records {@code smartcart.recommendations.operation}; includes the database work around the model call.
+     */
+    private <T> T timed(String operation, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(operationTimer(operation, outcome));
+        }
+    }
+
+    private Flux<String> timedStream(String operation, Flux<String> stream) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return stream
+                    .doOnComplete(() -> sample.stop(operationTimer(operation, "success")))
+                    .doOnError(e -> sample.stop(operationTimer(operation, "error")))
+                    .doOnCancel(() -> sample.stop(operationTimer(operation, "cancelled")));
+        });
+    }
+
+    private Timer operationTimer(String operation, String outcome) {
+        return Timer.builder("smartcart.recommendations.operation")
+                .description("Latency of AI recommendation and description operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Prompt createDescriptionPrompt(Product product) {
         PromptTemplate promptTemplate = new PromptTemplate(
                 "Generate an engaging, SEO-friendly product description for the following product:\n" +
                         "Name: {name}\n" +
@@ -93,15 +334,15 @@ public class AIRecommendationService {
                         "Current Description: {description}\n\n" +
                         "Make it compelling and highlight key features and benefits."
         );
+        // imported products may lack any of these, and Map.of does not take nulls
         Map<String, Object> promptVariables = Map.of(
-                "name", product.getName(),
-                "category", product.getCategory(),
-                "description", product.getDescription(),
-                "brand", product.getBrand()
+                "name", Objects.requireNonNullElse(product.getName(), ""),
+                "category", Objects.requireNonNullElse(product.getCategory(), ""),
+                "description", Objects.requireNonNullElse(product.getDescription(), ""),
+                "brand", Objects.requireNonNullElse(product.getBrand(), "")
         );
 
-        Prompt prompt = promptTemplate.create(promptVariables);
-        return chatModel.call(prompt).getResult().getOutput().getText();
+        return promptTemplate.create(promptVariables);
     }
 }
 
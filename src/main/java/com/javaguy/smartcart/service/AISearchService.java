@@ -1,68 +1,300 @@
 package com.javaguy.smartcart.service;
 
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.ProductView;
 import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.llm.ChatGateway;
+import com.javaguy.smartcart.llm.LlmOperation;
+import com.javaguy.smartcart.llm.PromptBuilder;
+import com.javaguy.smartcart.llm.LlmResponseCache;
+import com.javaguy.smartcart.llm.LlmUnavailableException;
 import com.javaguy.smartcart.repository.ProductRepository;
+import com.javaguy.smartcart.search.FuzzySearchIndex;
+import com.javaguy.smartcart.search.ProductNameMatcher;
+import com.javaguy.smartcart.search.ProductSearchIndex;
+import com.javaguy.smartcart.search.QueryRewriteDictionary;
+import com.javaguy.smartcart.search.SemanticSearchIndex;
+import com.javaguy.smartcart.search.TextAnalyzer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 public class AISearchService {
 
     private static final Logger log = LoggerFactory.getLogger(AISearchService.class);
     private final ProductRepository productRepository;
-    private final OllamaChatModel chatModel;
-    public AISearchService(ProductRepository productRepository, OllamaChatModel chatModel) {
+    private final ChatGateway chatGateway;
+    private final ProductSearchIndex searchIndex;
+    private final FuzzySearchIndex fuzzyIndex;
+    private final QueryRewriteDictionary rewriteDictionary;
+    private final SemanticSearchIndex semanticIndex;
+    private final ProductNameMatcher productNameMatcher;
+    private final CatalogStore catalogStore;
+    private final PromptBuilder promptBuilder;
+    private final LlmResponseCache responseCache;
+    private final MeterRegistry meterRegistry;
+    private final int maxResults;
+    private final boolean speculative;
+    private final Duration latencyBudget;
+    private final ExecutorService tierExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AISearchService(ProductRepository productRepository, ChatGateway chatGateway,
+                           ProductSearchIndex searchIndex, FuzzySearchIndex fuzzyIndex,
+                           QueryRewriteDictionary rewriteDictionary, SemanticSearchIndex semanticIndex,
+                           ProductNameMatcher productNameMatcher, CatalogStore catalogStore,
+                           PromptBuilder promptBuilder, LlmResponseCache responseCache, MeterRegistry meterRegistry,
+                           @Value("${smartcart.search.max-results:20}") int maxResults,
+                           @Value("${smartcart.search.execution-mode:sequential}") String executionMode,
+                           @Value("${smartcart.search.latency-budget:5s}") Duration latencyBudget) {
         this.productRepository = productRepository;
-        this.chatModel = chatModel;
+        this.chatGateway = chatGateway;
+        this.searchIndex = searchIndex;
+        this.fuzzyIndex = fuzzyIndex;
+        this.rewriteDictionary = rewriteDictionary;
+        this.semanticIndex = semanticIndex;
+        this.productNameMatcher = productNameMatcher;
+        this.catalogStore = catalogStore;
+        this.promptBuilder = promptBuilder;
+        this.responseCache = responseCache;
+        this.meterRegistry = meterRegistry;
+        this.maxResults = maxResults;
+        this.speculative = "speculative".equalsIgnoreCase(executionMode);
+        this.latencyBudget = latencyBudget;
+        log.info("AISearchService initialized in {} mode", speculative ? "speculative" : "sequential");
     }
 
-    public List<Product> intelligentSearch(String userQuery){
-        //we first try using traditional search
-        List<Product> traditionalResults = productRepository.findBySearchQuery(userQuery);
-        log.info("Traditional search returned {} results", traditionalResults.size());
-        if (!traditionalResults.isEmpty()){
-            log.info("Traditional search returned {} results", traditionalResults.size());
-            return traditionalResults;
+    public List<ProductView> intelligentSearch(String userQuery){
+        return speculative ? speculativeSearch(userQuery) : sequentialSearch(userQuery);
+    }
+
+    /**
+     * Runs the in-memory tiers first, they answer in microseconds, and only then starts the
+     * enhanced and semantic tiers together on virtual threads, taking the first in priority order
+     * that has hits. Once the latency budget is spent, whatever has completed is returned.
+     *
+     * A tier that is no longer waited for is not stopped: its model call may be the one other
+     * requests for the same prompt are sharing, so it runs to its own timeout and its result is
+     * dropped. Compared with sequential mode, a miss in the enhanced tier does not add the
+     * semantic tier's latency, at the cost of a semantic model call for queries the enhanced
+     * tier answers.
+     */
+    private List<ProductView> speculativeSearch(String userQuery) {
+        List<ProductView> localResults = localTiers(userQuery);
+        if (!localResults.isEmpty()) {
+            return localResults;
+        }
+        long deadline = System.nanoTime() + latencyBudget.toNanos();
+        Future<List<ProductView>> enhanced = tierExecutor.submit(() -> enhancedTier(userQuery));
+        Future<List<ProductView>> semantic = tierExecutor.submit(() -> semanticTier(userQuery));
+        fellThroughTo("enhanced");
+        List<ProductView> enhancedResults = awaitTier("enhanced", enhanced, deadline);
+        if (!enhancedResults.isEmpty()) {
+            log.info("Enhanced search successful, returning {} products", enhancedResults.size());
+            return enhancedResults;
+        }
+        fellThroughTo("semantic");
+        List<ProductView> semanticResults = awaitTier("semantic", semantic, deadline);
+        log.info("Semantic search returned {} results", semanticResults.size());
+        return semanticResults;
+    }
+
+    private List<ProductView> awaitTier(String tier, Future<List<ProductView>> results, long deadline) {
+        try {
+            return results.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Latency budget of {} exhausted before the {} tier completed", latencyBudget, tier);
+        } catch (ExecutionException e) {
+            log.warn("The {} search tier failed: {}", tier, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        tierExecutor.shutdownNow();
+    }
+
+    private List<ProductView> sequentialSearch(String userQuery) {
+        //we first try using traditional search, then learned rewrites and the typo-tolerant one
+        List<ProductView> localResults = localTiers(userQuery);
+        if (!localResults.isEmpty()){
+            return localResults;
         }
         //what if traditional one fails? hehe, we got backup
-        log.info("Traditional search failed, trying enhanced search");
-        String enhancedQuery = enhanceSearchQuery(userQuery);
-        log.info("Enhanced query: '{}'", enhancedQuery);
+        log.info("Local search tiers failed, trying enhanced search");
+        fellThroughTo("enhanced");
         //lets search again
-        List<Product> enhancedResults = productRepository.findBySearchQuery(enhancedQuery);
+        List<ProductView> enhancedResults = enhancedTier(userQuery);
         log.info("Enhanced search returned {} results", enhancedResults.size());
         if (!enhancedResults.isEmpty()){
             log.info("Enhanced search successful, returning {} products", enhancedResults.size());
             return enhancedResults;
         }
         log.info("Enhanced search failed, trying performance semantic search");
+        fellThroughTo("semantic");
         // fall back plan
-        return performanceSemanticSearch(userQuery);
-    }
-    private List<Product> performanceSemanticSearch(String userQuery){
-        List<Product> allProducts = productRepository.findAll();
-
-        String aiResponse = chatModel.call("The user is searching for products with the query: '" + userQuery + "'\n" +
-                "Suggest 3-5 alternative keywords or categories that might match their intent. " +
-                "Focus on product categories, brands, or features. Return only the keywords separated by commas.");
-        return allProducts.stream()
-                .filter(product -> {
-                    String response = aiResponse.toLowerCase();
-                    return response.contains(product.getCategory().toLowerCase()) || response.contains(product.getName().toLowerCase());
+        return semanticTier(userQuery);
+    }
+
+    /**
+     * The keyword tier, then the query expanded with a learned rewrite, then the fuzzy tier; all
+     * are answered from memory. A hit in either of the last two is a query that would otherwise
+     * have gone to the chat model, counted as {@code smartcart.search.llm-calls-avoided}.
+     */
+    private List<ProductView> localTiers(String userQuery) {
+        List<ProductView> traditionalResults = traditionalTier(userQuery);
+        log.info("Traditional search returned {} results", traditionalResults.size());
+        if (!traditionalResults.isEmpty()) {
+            return traditionalResults;
+        }
+        List<ProductView> rewriteResults = rewriteTier(userQuery);
+        if (!rewriteResults.isEmpty()) {
+            log.info("Learned rewrite search returned {} results", rewriteResults.size());
+            meterRegistry.counter("smartcart.search.llm-calls-avoided", "tier", "rewrite").increment();
+            return rewriteResults;
+        }
+        fellThroughTo("fuzzy");
+        List<ProductView> fuzzyResults = fuzzyTier(userQuery);
+        log.info("Fuzzy search returned {} results", fuzzyResults.size());
+        if (!fuzzyResults.isEmpty()) {
+            meterRegistry.counter("smartcart.search.llm-calls-avoided", "tier", "fuzzy").increment();
+        }
+        return fuzzyResults;
+    }
+
+    private List<ProductView> traditionalTier(String userQuery) {
+        return timeTier("traditional", () -> keywordSearch(userQuery));
+    }
+
+    /**
+     * Only runs, and only counts as a fall-through, when a rewrite applies to the query.
+     */
+    private List<ProductView> rewriteTier(String userQuery) {
+        return rewriteDictionary.rewrite(userQuery)
+                .map(rewrite -> {
+                    fellThroughTo("rewrite");
+                    List<ProductView> results = timeTier("rewrite", () -> keywordSearch(userQuery + " " + rewrite));
+                    rewriteDictionary.recordOutcome(userQuery, !results.isEmpty());
+                    return results;
                 })
-                .limit(5)
-                .toList();
+                .orElse(List.of());
+    }
+
+    private List<ProductView> fuzzyTier(String userQuery) {
+        return timeTier("fuzzy", () -> fuzzyIndex.isReady()
+                ? findInRankOrder(fuzzyIndex.search(userQuery, maxResults))
+                : List.of());
+    }
+
+    private List<ProductView> enhancedTier(String userQuery) {
+        return timeTier("enhanced", () -> {
+            String enhancedQuery = enhanceSearchQuery(userQuery);
+            log.info("Enhanced query: '{}'", enhancedQuery);
+            List<ProductView> results = keywordSearch(enhancedQuery);
+            rewriteDictionary.learn(userQuery, enhancedQuery, !results.isEmpty());
+            return results;
+        });
+    }
+
+    private List<ProductView> semanticTier(String userQuery) {
+        return timeTier("semantic", () -> performanceSemanticSearch(userQuery));
+    }
+
+    /**
+     * Records {@code smartcart.search.tier}, tagged with whether the tier found anything. A tier
+     * that needs the chat or embedding model while it is unavailable finds nothing, so the search
+     * degrades to the results of the tiers that do not depend on it.
+     */
+    private List<ProductView> timeTier(String tier, Supplier<List<ProductView>> search) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            List<ProductView> results = search.get();
+            outcome = results.isEmpty() ? "empty" : "hit";
+            return results;
+        } catch (LlmUnavailableException e) {
+            outcome = "degraded";
+            meterRegistry.counter("smartcart.llm.fallbacks", "operation", "search").increment();
+            log.warn("The {} search tier is skipped, model unavailable: {}", tier, e.getMessage());
+            return List.of();
+        } finally {
+            sample.stop(Timer.builder("smartcart.search.tier")
+                    .description("Latency of each intelligent search tier")
+                    .tag("tier", tier)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void fellThroughTo(String tier) {
+        meterRegistry.counter("smartcart.search.fallthrough", "to", tier).increment();
+    }
+
+    /**
+     * BM25-ranked lookup in the in-memory index; only falls back to the LIKE query while
+     * the index is still being built during startup.
+     */
+    private List<ProductView> keywordSearch(String query) {
+        if (!searchIndex.isReady()) {
+            return findInRankOrder(productRepository.findBySearchQuery(query).stream().map(Product::getId).toList());
+        }
+        return findInRankOrder(searchIndex.search(query, maxResults));
+    }
+
+    /**
+     * Resolves ids against the catalog snapshot, so a search hit costs no database round trip.
+     */
+    private List<ProductView> findInRankOrder(List<Long> rankedIds) {
+        return catalogStore.snapshot().getAll(rankedIds);
+    }
+
+    /**
+     * Nearest neighbours of the query embedding when the vector index is available,
+     * otherwise asks the chat model for keywords and matches them against the catalog.
+     */
+    private List<ProductView> performanceSemanticSearch(String userQuery){
+        if (semanticIndex.isReady()) {
+            List<ProductView> semanticResults = findInRankOrder(semanticIndex.search(userQuery, 5));
+            log.info("Vector search returned {} results", semanticResults.size());
+            return semanticResults;
+        }
+        String aiResponse = suggestKeywords(userQuery);
+        return findInRankOrder(productNameMatcher.match(aiResponse, 5));
     }
 
     private String enhanceSearchQuery(String originalQuery) {
-        String prompt = "The user is searching for products with the query: '" + originalQuery + "'\n" +
-                "Suggest 3-5 alternative keywords or categories that might match their intent. " +
-                "Focus on product categories, brands, or features. Return only the keywords separated by commas.";
+        return suggestKeywords(originalQuery);
+    }
 
-        return chatModel.call(prompt);
+    /**
+     * Query enhancement and the semantic fallback send the same prompt, so both share one
+     * cached response per normalized query and model.
+     */
+    private String suggestKeywords(String userQuery) {
+        String normalizedQuery = String.join(" ", TextAnalyzer.tokenize(userQuery));
+        LlmResponseCache.Key key = new LlmResponseCache.Key(
+                chatGateway.modelName(), "keyword-suggestions", normalizedQuery);
+        return responseCache.get(key, () -> {
+            String response = chatGateway.call(LlmOperation.SEARCH, promptBuilder.keywordPrompt(userQuery))
+                    .getResult().getOutput().getText();
+            return String.join(", ", PromptBuilder.parseStrings(response));
+        });
     }
 }
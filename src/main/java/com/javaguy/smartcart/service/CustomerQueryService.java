@@ -0,0 +1,52 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.CustomerAttribute;
+import com.javaguy.smartcart.dto.CustomerView;
+import com.javaguy.smartcart.repository.CustomerRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read side of the customer API. Listing customers costs three queries however many there
+ * are: one for the customers and one per element collection.
+ */
+@Service
+public class CustomerQueryService {
+
+    private final CustomerRepository customerRepository;
+
+    public CustomerQueryService(CustomerRepository customerRepository) {
+        this.customerRepository = customerRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public List<CustomerView> findAll() {
+        Map<Long, List<String>> preferences = groupByCustomer(customerRepository.findAllPreferences());
+        Map<Long, List<Long>> purchaseHistory = groupByCustomer(customerRepository.findAllPurchaseHistory());
+        return customerRepository.findAll().stream()
+                .map(customer -> new CustomerView(customer.getId(), customer.getEmail(), customer.getFirstName(),
+                        customer.getLastName(),
+                        preferences.getOrDefault(customer.getId(), List.of()),
+                        purchaseHistory.getOrDefault(customer.getId(), List.of()),
+                        customer.getCreatedAt()))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<CustomerView> findById(long id) {
+        return customerRepository.findById(id).map(CustomerView::from);
+    }
+
+    private static <T> Map<Long, List<T>> groupByCustomer(List<CustomerAttribute<T>> attributes) {
+        Map<Long, List<T>> grouped = new HashMap<>();
+        attributes.forEach(attribute ->
+                grouped.computeIfAbsent(attribute.customerId(), id -> new ArrayList<>()).add(attribute.value()));
+        return grouped;
+    }
+}
@@ -0,0 +1,365 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.DescriptionJobRequest;
+import com.javaguy.smartcart.dto.DescriptionJobStatus;
+import com.javaguy.smartcart.entity.DescriptionJob;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.llm.LlmUnavailableException;
+import com.javaguy.smartcart.repository.DescriptionJobRepository;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Generates SEO descriptions for many products in the background and writes them back to
+ * {@code Product.description}. Work from all jobs shares one semaphore, so the number of
+ * concurrent Ollama calls stays at {@code smartcart.jobs.descriptions.concurrency} however many
+ * jobs are running. Results are written in batches, and each batch also checkpoints the job.
+ *
+ * A busy or failing chat model does not stop a job: the product stays pending and is retried
+ * after a back-off. Only an open circuit breaker pauses the job, which then resumes by itself
+ * once the breaker lets calls through again.
+ */
+@Service
+public class DescriptionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(DescriptionJobService.class);
+    private static final int DESCRIPTION_MAX_LENGTH = 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+
+    private final DescriptionJobRepository jobRepository;
+    private final ProductRepository productRepository;
+    private final AIRecommendationService aiRecommendationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Semaphore ollamaPermits;
+    private final int writeBatchSize;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+    public DescriptionJobService(DescriptionJobRepository jobRepository,
+                                 ProductRepository productRepository,
+                                 AIRecommendationService aiRecommendationService,
+                                 TransactionTemplate transactionTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${smartcart.jobs.descriptions.concurrency:2}") int concurrency,
+                                 @Value("${smartcart.jobs.descriptions.write-batch-size:20}") int writeBatchSize) {
+        this.jobRepository = jobRepository;
+        this.productRepository = productRepository;
+        this.aiRecommendationService = aiRecommendationService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.ollamaPermits = new Semaphore(concurrency);
+        this.writeBatchSize = writeBatchSize;
+        log.info("DescriptionJobService initialized with Ollama concurrency {} and write batch size {}",
+                concurrency, writeBatchSize);
+    }
+
+    public DescriptionJobStatus submit(DescriptionJobRequest request) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        if (request.productIds() != null) {
+            productIds.addAll(request.productIds());
+        }
+        if (request.category() != null && !request.category().isBlank()) {
+            productIds.addAll(productRepository.findIdsByCategory(request.category()));
+        }
+        if (productIds.isEmpty()) {
+            throw new IllegalArgumentException("A description job needs product ids or a category with products");
+        }
+        DescriptionJob job = jobRepository.save(new DescriptionJob(request.category(), productIds));
+        log.info("Submitted description job {} for {} products", job.getId(), productIds.size());
+        start(job.getId());
+        return status(job.getId());
+    }
+
+    public DescriptionJobStatus pause(long jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null) {
+            running.pausedByUser = true;
+            running.stopRequested = true;
+            log.info("Pause requested for description job {}", jobId);
+        }
+        return status(jobId);
+    }
+
+    /**
+     * Restarts a paused, failed or interrupted job from its last checkpoint.
+     */
+    public DescriptionJobStatus resume(long jobId) {
+        DescriptionJob job = findJob(jobId);
+        if (job.getStatus() != DescriptionJob.Status.COMPLETED && !runningJobs.containsKey(jobId)) {
+            updateStatus(jobId, DescriptionJob.Status.RUNNING);
+            start(jobId);
+        }
+        return status(jobId);
+    }
+
+    public DescriptionJobStatus status(long jobId) {
+        return toStatus(findJob(jobId));
+    }
+
+    public List<DescriptionJobStatus> allStatuses() {
+        return jobRepository.findAll().stream().map(this::toStatus).toList();
+    }
+
+    /**
+     * Jobs still marked RUNNING were interrupted by a shutdown; pick them up again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        jobRepository.findByStatus(DescriptionJob.Status.RUNNING).forEach(job -> {
+            log.info("Resuming interrupted description job {}", job.getId());
+            start(job.getId());
+        });
+    }
+
+    /**
+     * Interrupted jobs keep their RUNNING status and are resumed from the checkpoint on the next start.
+     */
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void start(long jobId) {
+        RunningJob running = new RunningJob(jobId);
+        if (runningJobs.putIfAbsent(jobId, running) == null) {
+            workers.execute(() -> run(running));
+        }
+    }
+
+    private void run(RunningJob running) {
+        List<Long> pending = transactionTemplate.execute(status ->
+                findJob(running.jobId).getPendingProductIds().stream().sorted().toList());
+        try {
+            try (ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Long productId : pending) {
+                    if (running.stopRequested) {
+                        break;
+                    }
+                    ollamaPermits.acquire();
+                    calls.execute(() -> {
+                        try {
+                            generate(running, productId);
+                        } finally {
+                            ollamaPermits.release();
+                        }
+                    });
+                }
+            }
+            flush(running);
+            finish(running.jobId, running.stopRequested ? DescriptionJob.Status.PAUSED : DescriptionJob.Status.COMPLETED);
+            Duration resumeAfter = running.resumeAfter;
+            if (resumeAfter != null && !running.pausedByUser) {
+                workers.execute(() -> resumeAfterCircuitOpen(running.jobId, resumeAfter));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Description job {} interrupted, it will resume from its checkpoint", running.jobId);
+        } catch (RuntimeException e) {
+            log.error("Description job {} failed: {}", running.jobId, e.getMessage(), e);
+            finish(running.jobId, DescriptionJob.Status.FAILED);
+        } finally {
+            runningJobs.remove(running.jobId);
+        }
+    }
+
+    private void generate(RunningJob running, long productId) {
+        String description = null;
+        try {
+            Product product = productRepository.findById(productId).orElse(null);
+            if (product != null) {
+                description = generateWithRetries(running, product);
+            } else {
+                log.warn("Description job {}: product {} no longer exists", running.jobId, productId);
+            }
+        } catch (LlmUnavailableException | InterruptedException e) {
+            // the product stays pending for when the job resumes
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Description job {}: generation failed for product {}: {}", running.jobId, productId, e.getMessage());
+        }
+        running.results.add(new GeneratedDescription(productId, description));
+        if (running.results.size() >= writeBatchSize) {
+            flush(running);
+        }
+    }
+
+    /**
+     * Retries a busy, slow or failing chat model after its retry-after, backing off exponentially
+     * from {@link #MIN_BACKOFF}; the last failure counts against the product like any other. An
+     * open circuit breaker pauses the job until the breaker closes instead, and a paused job
+     * stops retrying. Both leave the product pending by throwing.
+     */
+    private String generateWithRetries(RunningJob running, Product product) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return aiRecommendationService.generateProductDescription(product);
+            } catch (LlmUnavailableException e) {
+                if (e.getReason() == LlmUnavailableException.Reason.CIRCUIT_OPEN) {
+                    pauseUntilCircuitCloses(running, e);
+                    throw e;
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    throw new IllegalStateException("chat model unavailable after " + attempt + " attempts", e);
+                }
+                if (running.stopRequested) {
+                    throw e;
+                }
+                Duration backoff = MIN_BACKOFF.multipliedBy(1L << (attempt - 1));
+                if (e.getRetryAfter().compareTo(backoff) > 0) {
+                    backoff = e.getRetryAfter();
+                }
+                log.info("Description job {}: retrying product {} in {}, {}", running.jobId, product.getId(),
+                        backoff, e.getMessage());
+                Thread.sleep(backoff);
+                if (running.stopRequested) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void pauseUntilCircuitCloses(RunningJob running, LlmUnavailableException e) {
+        if (!running.stopRequested) {
+            log.warn("Description job {}: pausing for {}, {}", running.jobId, e.getRetryAfter(), e.getMessage());
+        }
+        Duration resumeAfter = e.getRetryAfter().compareTo(MIN_BACKOFF) > 0 ? e.getRetryAfter() : MIN_BACKOFF;
+        running.resumeAfter = resumeAfter;
+        running.stopRequested = true;
+    }
+
+    private void resumeAfterCircuitOpen(long jobId, Duration resumeAfter) {
+        try {
+            Thread.sleep(resumeAfter);
+        } catch (InterruptedException e) {
+            // shutting down; the job stays paused
+            return;
+        }
+        log.info("Description job {}: resuming after the chat model circuit breaker was open", jobId);
+        resume(jobId);
+    }
+
+    /**
+     * Writes the buffered descriptions and removes their ids from the job's pending set in one
+     * transaction, so the checkpoint never claims work that was not saved.
+     */
+    private void flush(RunningJob running) {
+        synchronized (running) {
+            List<GeneratedDescription> batch = new ArrayList<>();
+            GeneratedDescription result;
+            while ((result = running.results.poll()) != null) {
+                batch.add(result);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<Long, String> descriptions = batch.stream()
+                    .filter(generated -> generated.description() != null)
+                    .collect(Collectors.toMap(GeneratedDescription::productId, GeneratedDescription::description));
+            List<Product> saved = transactionTemplate.execute(status -> {
+                // with their tags: the saved products are handed to the read models after the session closes
+                List<Product> products = productRepository.findByIdIn(descriptions.keySet());
+                products.forEach(product -> product.setDescription(truncate(descriptions.get(product.getId()))));
+                DescriptionJob job = findJob(running.jobId);
+                batch.forEach(generated -> job.getPendingProductIds().remove(generated.productId()));
+                job.setProcessedCount(job.getProcessedCount() + products.size());
+                job.setFailedCount(job.getFailedCount() + batch.size() - products.size());
+                productRepository.flush();
+                return products;
+            });
+            // after the commit, so the read models never show descriptions that were rolled back
+            eventPublisher.publishEvent(new ProductsSavedEvent(saved));
+            running.processed.addAndGet(batch.size());
+            log.info("Description job {}: saved batch of {} descriptions", running.jobId, descriptions.size());
+        }
+    }
+
+    private void finish(long jobId, DescriptionJob.Status status) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            DescriptionJob job = findJob(jobId);
+            job.setStatus(status);
+            if (status == DescriptionJob.Status.COMPLETED) {
+                job.setFinishedAt(LocalDateTime.now());
+            }
+        });
+        log.info("Description job {} is now {}", jobId, status);
+    }
+
+    private void updateStatus(long jobId, DescriptionJob.Status status) {
+        transactionTemplate.executeWithoutResult(tx -> findJob(jobId).setStatus(status));
+    }
+
+    private DescriptionJob findJob(long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new NoSuchElementException("Description job not found: " + jobId));
+    }
+
+    private DescriptionJobStatus toStatus(DescriptionJob job) {
+        int pending = job.getTotalCount() - job.getProcessedCount() - job.getFailedCount();
+        RunningJob running = runningJobs.get(job.getId());
+        Double throughputPerMinute = null;
+        Long etaSeconds = null;
+        if (running != null) {
+            double elapsedMinutes = (System.nanoTime() - running.startedAtNanos) / 60_000_000_000.0;
+            int done = running.processed.get();
+            if (done > 0 && elapsedMinutes > 0) {
+                throughputPerMinute = done / elapsedMinutes;
+                etaSeconds = Math.round(pending / throughputPerMinute * 60);
+            }
+        }
+        return new DescriptionJobStatus(job.getId(), job.getStatus(), job.getCategory(), job.getTotalCount(),
+                job.getProcessedCount(), job.getFailedCount(), pending, throughputPerMinute, etaSeconds,
+                job.getCreatedAt(), job.getFinishedAt());
+    }
+
+    private static String truncate(String description) {
+        String trimmed = description.strip();
+        return trimmed.length() <= DESCRIPTION_MAX_LENGTH ? trimmed : trimmed.substring(0, DESCRIPTION_MAX_LENGTH);
+    }
+
+    private record GeneratedDescription(long productId, String description) {}
+
+    private static final class RunningJob {
+        final long jobId;
+        final long startedAtNanos = System.nanoTime();
+        final ConcurrentLinkedQueue<GeneratedDescription> results = new ConcurrentLinkedQueue<>();
+        final AtomicInteger processed = new AtomicInteger();
+        volatile boolean stopRequested;
+        volatile boolean pausedByUser;
+        // set when an open circuit breaker paused the job
+        volatile Duration resumeAfter;
+
+        RunningJob(long jobId) {
+            this.jobId = jobId;
+        }
+    }
+}
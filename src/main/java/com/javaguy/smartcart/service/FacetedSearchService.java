@@ -0,0 +1,88 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.catalog.CatalogStore;
+import com.javaguy.smartcart.dto.FacetFilter;
+import com.javaguy.smartcart.dto.FacetedProducts;
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.search.FacetIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Faceted browsing of the catalog, optionally narrowing the results of an intelligent search.
+ * Filtering and counting happen in the {@link FacetIndex}; only the requested page is turned
+ * into products, from the catalog snapshot.
+ */
+@Service
+public class FacetedSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(FacetedSearchService.class);
+
+    private final FacetIndex facetIndex;
+    private final CatalogStore catalogStore;
+    private final AISearchService aiSearchService;
+    private final MeterRegistry meterRegistry;
+    private final int maxFacetValues;
+    private final int maxPageSize;
+
+    public FacetedSearchService(FacetIndex facetIndex, CatalogStore catalogStore, AISearchService aiSearchService,
+                                MeterRegistry meterRegistry,
+                                @Value("${smartcart.facets.max-values:20}") int maxFacetValues,
+                                @Value("${smartcart.facets.max-page-size:100}") int maxPageSize) {
+        this.facetIndex = facetIndex;
+        this.catalogStore = catalogStore;
+        this.aiSearchService = aiSearchService;
+        this.meterRegistry = meterRegistry;
+        this.maxFacetValues = Math.max(1, maxFacetValues);
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * With a {@code query} the page keeps the search ranking and facets count only the search
+     * results; without one the whole catalog is filtered and products come in id order.
+     */
+    public FacetedProducts search(FacetFilter filter, String query, int offset, int limit) {
+        int pageSize = Math.max(0, Math.min(limit, maxPageSize));
+        int from = Math.max(0, offset);
+        List<Long> ranked = null;
+        RoaringBitmap scope = null;
+        if (query != null && !query.isBlank()) {
+            ranked = aiSearchService.intelligentSearch(query).stream().map(ProductView::id).toList();
+            scope = new RoaringBitmap();
+            for (Long id : ranked) {
+                scope.add(Math.toIntExact(id));
+            }
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        FacetIndex.Result result = facetIndex.query(filter, scope, maxFacetValues);
+        List<Long> pageIds = ranked == null
+                ? page(result.matches(), from, pageSize)
+                : ranked.stream().filter(id -> result.matches().contains(Math.toIntExact(id))).skip(from).limit(pageSize).toList();
+        sample.stop(meterRegistry.timer("smartcart.facets.query"));
+        log.debug("Faceted query matched {} products", result.matches().getLongCardinality());
+        return new FacetedProducts(result.matches().getLongCardinality(), from,
+                catalogStore.snapshot().getAll(pageIds), result.facets());
+    }
+
+    private static List<Long> page(RoaringBitmap matches, int offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        if (limit == 0 || offset >= matches.getLongCardinality()) {
+            return ids;
+        }
+        PeekableIntIterator iterator = matches.getIntIterator();
+        iterator.advanceIfNeeded(matches.select(offset));
+        while (iterator.hasNext() && ids.size() < limit) {
+            ids.add((long) iterator.next());
+        }
+        return ids;
+    }
+}
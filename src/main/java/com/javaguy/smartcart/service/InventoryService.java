@@ -0,0 +1,287 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.Order;
+import com.javaguy.smartcart.dto.OrderLine;
+import com.javaguy.smartcart.dto.ProductStock;
+import com.javaguy.smartcart.dto.Reservation;
+import com.javaguy.smartcart.dto.ReservationRequest;
+import com.javaguy.smartcart.entity.Customer;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.CustomerProfileChangedEvent;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.event.StockChangedEvent;
+import com.javaguy.smartcart.inventory.InsufficientStockException;
+import com.javaguy.smartcart.inventory.StockLedger;
+import com.javaguy.smartcart.repository.CustomerRepository;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reservations and checkout against the in-memory {@link StockLedger}, so a flash sale on one
+ * product never queues on a database row lock. Stock decisions are final as soon as the ledger
+ * makes them; the database catches up through a write-behind that runs every
+ * {@code flush-interval} and on shutdown, writing each changed product's stock once per flush
+ * and each customer's new purchases in one batch, in transactions of {@code write-batch-size}.
+ *
+ * On startup the ledger is loaded from {@code Product.stockQuantity}. Stock stored there counts
+ * units still held by reservations, so reservations lost with a restart or a crash give their
+ * units back; purchases made within the last flush interval before a crash are lost the same way.
+ */
+@Service
+public class InventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
+
+    private record Purchase(long customerId, List<OrderLine> items) {}
+
+    private final ProductRepository productRepository;
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration reservationTtl;
+    private final int writeBatchSize;
+    private final StockLedger ledger = new StockLedger();
+    private final Map<UUID, Reservation> reservations = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Purchase> pendingPurchases = new ConcurrentLinkedQueue<>();
+
+    public InventoryService(ProductRepository productRepository, CustomerRepository customerRepository,
+                            TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                            @Value("${smartcart.inventory.reservation-ttl:10m}") Duration reservationTtl,
+                            @Value("${smartcart.inventory.write-batch-size:500}") int writeBatchSize) {
+        this.productRepository = productRepository;
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.reservationTtl = reservationTtl;
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long startTime = System.currentTimeMillis();
+        List<ProductStock> stock = productRepository.findAllStock();
+        stock.forEach(product -> ledger.track(product.productId(),
+                product.stockQuantity() == null ? 0 : product.stockQuantity()));
+        log.info("Inventory loaded in {}ms with {} products", System.currentTimeMillis() - startTime, stock.size());
+    }
+
+    /**
+     * New products start with the stock they were created with; for products already tracked
+     * the ledger is newer than the saved entity.
+     */
+    @EventListener
+    public void onProductsSaved(ProductsSavedEvent event) {
+        for (Product product : event.products()) {
+            ledger.track(product.getId(), product.getStockQuantity() == null ? 0 : product.getStockQuantity());
+        }
+    }
+
+    public OptionalInt available(long productId) {
+        return ledger.available(productId);
+    }
+
+    /**
+     * Holds the units for {@code reservation-ttl}. All lines are reserved or none is.
+     *
+     * @throws InsufficientStockException when a line asks for more than is available
+     * @throws IllegalArgumentException for an unknown customer or product or an empty order
+     */
+    public Reservation reserve(ReservationRequest request) {
+        List<OrderLine> items = validate(request);
+        reserveAll(items);
+        Reservation reservation = new Reservation(UUID.randomUUID(), request.customerId(), items,
+                Instant.now().plus(reservationTtl));
+        reservations.put(reservation.id(), reservation);
+        log.debug("Reserved {} for customer {} until {}", items, request.customerId(), reservation.expiresAt());
+        return reservation;
+    }
+
+    /**
+     * Buys the units of a reservation; empty when it does not exist or has expired.
+     */
+    public Optional<Order> checkout(UUID reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return Optional.empty();
+        }
+        if (reservation.expiresAt().isBefore(Instant.now())) {
+            releaseAll(reservation.items());
+            return Optional.empty();
+        }
+        return Optional.of(place(reservation.id(), reservation.customerId(), reservation.items()));
+    }
+
+    /**
+     * Reserves and buys in one step.
+     */
+    public Order checkout(ReservationRequest request) {
+        List<OrderLine> items = validate(request);
+        reserveAll(items);
+        return place(UUID.randomUUID(), request.customerId(), items);
+    }
+
+    public boolean release(UUID reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        releaseAll(reservation.items());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${smartcart.inventory.expiry-check-interval:5s}")
+    public void releaseExpired() {
+        Instant now = Instant.now();
+        int released = 0;
+        for (Reservation reservation : reservations.values()) {
+            // whoever removes the reservation first owns its units: checkout, release or expiry
+            if (reservation.expiresAt().isBefore(now) && reservations.remove(reservation.id(), reservation)) {
+                releaseAll(reservation.items());
+                released++;
+            }
+        }
+        if (released > 0) {
+            log.info("Released {} expired reservations", released);
+        }
+    }
+
+    /**
+     * Writes stock and purchases changed since the last flush. A failed batch is logged and
+     * retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${smartcart.inventory.flush-interval:1s}")
+    public void flush() {
+        write(true);
+    }
+
+    /**
+     * The last flush; the read models listening for the events are going away with the context.
+     */
+    @PreDestroy
+    void shutdown() {
+        write(false);
+    }
+
+    private synchronized void write(boolean publishEvents) {
+        flushStock(publishEvents);
+        flushPurchases(publishEvents);
+    }
+
+    private void flushStock(boolean publishEvents) {
+        Map<Long, Integer> changes = ledger.drainChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> written = new LinkedHashMap<>();
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(changes.entrySet());
+        for (int start = 0; start < entries.size(); start += writeBatchSize) {
+            List<Map.Entry<Long, Integer>> batch = entries.subList(start, Math.min(entries.size(), start + writeBatchSize));
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        batch.forEach(entry -> productRepository.updateStockQuantity(entry.getKey(), entry.getValue())));
+                batch.forEach(entry -> written.put(entry.getKey(), entry.getValue()));
+            } catch (RuntimeException e) {
+                ledger.markChanged(batch.stream().map(Map.Entry::getKey).toList());
+                log.warn("Failed to write stock of {} products, retrying later: {}", batch.size(), e.getMessage());
+            }
+        }
+        log.debug("Wrote stock of {} products", written.size());
+        if (publishEvents && !written.isEmpty()) {
+            eventPublisher.publishEvent(new StockChangedEvent(written));
+        }
+    }
+
+    private void flushPurchases(boolean publishEvents) {
+        Map<Long, List<Long>> purchasedByCustomer = new LinkedHashMap<>();
+        List<Purchase> drained = new ArrayList<>();
+        Purchase purchase;
+        while ((purchase = pendingPurchases.poll()) != null) {
+            drained.add(purchase);
+            List<Long> productIds = purchasedByCustomer.computeIfAbsent(purchase.customerId(), id -> new ArrayList<>());
+            purchase.items().forEach(line -> productIds.add(line.productId()));
+        }
+        if (purchasedByCustomer.isEmpty()) {
+            return;
+        }
+        List<Long> customerIds = new ArrayList<>(purchasedByCustomer.keySet());
+        for (int start = 0; start < customerIds.size(); start += writeBatchSize) {
+            List<Long> batch = customerIds.subList(start, Math.min(customerIds.size(), start + writeBatchSize));
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (Customer customer : customerRepository.findAllById(batch)) {
+                        customer.getPurchaseHistory().addAll(purchasedByCustomer.get(customer.getId()));
+                    }
+                });
+            } catch (RuntimeException e) {
+                drained.stream().filter(pending -> batch.contains(pending.customerId())).forEach(pendingPurchases::add);
+                log.warn("Failed to write purchases of {} customers, retrying later: {}", batch.size(), e.getMessage());
+                continue;
+            }
+            // after the commit, so listeners reading the history see the new purchases
+            if (publishEvents) {
+                batch.forEach(customerId -> eventPublisher.publishEvent(new CustomerProfileChangedEvent(customerId)));
+            }
+        }
+    }
+
+    private List<OrderLine> validate(ReservationRequest request) {
+        if (request.customerId() == null || request.items() == null || request.items().isEmpty()) {
+            throw new IllegalArgumentException("A customer and at least one item are required");
+        }
+        for (OrderLine line : request.items()) {
+            if (line.productId() == null || !ledger.isTracked(line.productId())) {
+                throw new IllegalArgumentException("Unknown product: " + line.productId());
+            }
+            if (line.quantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product " + line.productId());
+            }
+        }
+        if (!customerRepository.existsById(request.customerId())) {
+            throw new IllegalArgumentException("Unknown customer: " + request.customerId());
+        }
+        return List.copyOf(request.items());
+    }
+
+    private void reserveAll(List<OrderLine> items) {
+        for (int i = 0; i < items.size(); i++) {
+            OrderLine line = items.get(i);
+            if (!ledger.reserve(line.productId(), line.quantity())) {
+                releaseAll(items.subList(0, i));
+                throw new InsufficientStockException(line.productId(), line.quantity(),
+                        ledger.available(line.productId()).orElse(0));
+            }
+        }
+    }
+
+    private void releaseAll(List<OrderLine> items) {
+        items.forEach(line -> ledger.release(line.productId(), line.quantity()));
+    }
+
+    private Order place(UUID orderId, long customerId, List<OrderLine> items) {
+        items.forEach(line -> ledger.commit(line.productId(), line.quantity()));
+        pendingPurchases.add(new Purchase(customerId, items));
+        log.debug("Customer {} bought {}", customerId, items);
+        return new Order(orderId, customerId, items, Instant.now());
+    }
+}
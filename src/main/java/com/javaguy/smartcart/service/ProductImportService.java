@@ -0,0 +1,302 @@
+package com.javaguy.smartcart.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaguy.smartcart.dto.ProductImportProgress;
+import com.javaguy.smartcart.dto.ProductImportProgress.RejectedRow;
+import com.javaguy.smartcart.dto.ProductImportRow;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports products from NDJSON (one JSON object per line) or CSV (a header line naming the
+ * columns, tags separated by {@code |}). The input is read line by line and written in batches
+ * of {@code smartcart.import.batch-size}, each in its own transaction, so memory use does not
+ * grow with the size of the file. Products get their ids from a pooled sequence, which lets
+ * Hibernate send the product and tag inserts as JDBC batches.
+ *
+ * Invalid rows are rejected and reported without stopping the import. Each committed batch is
+ * published as a {@link ProductsSavedEvent}, so the catalog snapshot and search indexes take the
+ * new products in incrementally while the import is still running.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+    private static final int DESCRIPTION_MAX_LENGTH = 1000;
+    private static final Set<String> CSV_COLUMNS =
+            Set.of("name", "description", "price", "category", "brand", "stockquantity", "imageurl", "tags");
+
+    public enum Format { NDJSON, CSV }
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxReportedRejections;
+
+    public ProductImportService(ProductRepository productRepository,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                Validator validator,
+                                MeterRegistry meterRegistry,
+                                @Value("${smartcart.import.batch-size:500}") int batchSize,
+                                @Value("${smartcart.import.max-reported-rejections:100}") int maxReportedRejections) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    /**
+     * Reads {@code input} to the end, calling {@code progress} after every committed batch and
+     * once more, with {@code done} set, at the end of the input.
+     */
+    public void importProducts(InputStream input, Format format, Consumer<ProductImportProgress> progress)
+            throws IOException {
+        Run run = new Run(progress);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Map<String, Integer> csvHeader = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            run.line++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && csvHeader == null) {
+                try {
+                    csvHeader = parseCsvHeader(line);
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    // without a usable header no row can be read
+                    run.reject(run.line, e.getMessage());
+                    break;
+                }
+            }
+            try {
+                ProductImportRow row = format == Format.CSV ? parseCsv(line, csvHeader) : parseJson(line);
+                run.add(toValidProduct(row));
+            } catch (IllegalArgumentException e) {
+                run.reject(run.line, e.getMessage());
+            }
+            if (run.products.size() >= batchSize) {
+                run.writeBatch(false);
+            }
+        }
+        run.writeBatch(true);
+        log.info("Product import finished in {}ms: {} imported, {} rejected in {} batches",
+                run.elapsedMillis(), run.totalImported, run.totalRejected, run.batch);
+    }
+
+    private ProductImportRow parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, ProductImportRow.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    static Map<String, Integer> parseCsvHeader(String line) {
+        List<String> columns = splitCsv(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i).strip().toLowerCase(Locale.ROOT).replace("_", "");
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("unknown CSV column: " + columns.get(i));
+            }
+            header.put(column, i);
+        }
+        if (!header.containsKey("name") || !header.containsKey("price")) {
+            throw new IllegalArgumentException("the CSV header needs at least the name and price columns");
+        }
+        return header;
+    }
+
+    private static ProductImportRow parseCsv(String line, Map<String, Integer> header) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new HashMap<>();
+        header.forEach((column, index) -> {
+            String value = fields.get(index).strip();
+            values.put(column, value.isEmpty() ? null : value);
+        });
+        String tags = values.get("tags");
+        return new ProductImportRow(values.get("name"), values.get("description"),
+                parseNumber("price", values.get("price"), BigDecimal::new),
+                values.get("category"), values.get("brand"),
+                parseNumber("stockQuantity", values.get("stockquantity"), Integer::valueOf),
+                values.get("imageurl"),
+                tags == null ? List.of() : Arrays.asList(tags.split("\\|")));
+    }
+
+    private static <T> T parseNumber(String field, String value, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + ": not a number: " + value);
+        }
+    }
+
+    /**
+     * Splits one CSV record; fields may be quoted, with {@code ""} for a quote inside a field.
+     * Records cannot span lines.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Product toValidProduct(ProductImportRow row) {
+        Product product = row.toProduct();
+        product.getTags().removeIf(tag -> tag == null || tag.isBlank());
+        product.getTags().replaceAll(String::strip);
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        if (product.getDescription() != null && product.getDescription().length() > DESCRIPTION_MAX_LENGTH) {
+            throw new IllegalArgumentException("description: longer than " + DESCRIPTION_MAX_LENGTH + " characters");
+        }
+        return product;
+    }
+
+    /**
+     * State of one import: the batch being filled and the counts reported so far.
+     */
+    private final class Run {
+        final Consumer<ProductImportProgress> progress;
+        final long startedAtNanos = System.nanoTime();
+        final List<Product> products = new ArrayList<>();
+        final List<Long> productLines = new ArrayList<>();
+        List<RejectedRow> rejectedRows = new ArrayList<>();
+        long line;
+        int batch;
+        long totalImported;
+        long totalRejected;
+
+        Run(Consumer<ProductImportProgress> progress) {
+            this.progress = progress;
+        }
+
+        void add(Product product) {
+            products.add(product);
+            productLines.add(line);
+        }
+
+        void reject(long rejectedLine, String reason) {
+            totalRejected++;
+            meterRegistry.counter("smartcart.import.rows", "outcome", "rejected").increment();
+            if (totalRejected <= maxReportedRejections) {
+                rejectedRows.add(new RejectedRow(rejectedLine, reason));
+            }
+        }
+
+        /**
+         * A batch the database refuses is rejected as a whole; the import goes on with the next.
+         */
+        void writeBatch(boolean done) {
+            int imported = 0;
+            if (!products.isEmpty()) {
+                batch++;
+                List<Product> saved;
+                try {
+                    saved = transactionTemplate.execute(status -> {
+                        List<Product> batchSaved = productRepository.saveAll(products);
+                        productRepository.flush();
+                        return batchSaved;
+                    });
+                    imported = products.size();
+                    totalImported += imported;
+                    meterRegistry.counter("smartcart.import.rows", "outcome", "imported").increment(imported);
+                } catch (RuntimeException e) {
+                    saved = List.of();
+                    log.warn("Product import batch {} failed: {}", batch, e.getMessage());
+                    productLines.forEach(failedLine -> reject(failedLine, "batch " + batch + " failed: " + e.getMessage()));
+                }
+                // after the commit, so the read models never hold products of a rolled back batch
+                if (!saved.isEmpty()) {
+                    eventPublisher.publishEvent(new ProductsSavedEvent(saved));
+                }
+                products.clear();
+                productLines.clear();
+                log.info("Product import batch {}: {} imported, {} rejected so far", batch, imported, totalRejected);
+            }
+            progress.accept(new ProductImportProgress(batch, imported, totalImported, totalRejected,
+                    elapsedMillis(), done, rejectedRows));
+            rejectedRows = new ArrayList<>();
+        }
+
+        long elapsedMillis() {
+            return (System.nanoTime() - startedAtNanos) / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.entity.Customer;
+import com.javaguy.smartcart.event.CustomerProfileChangedEvent;
+import com.javaguy.smartcart.llm.LlmUnavailableException;
+import com.javaguy.smartcart.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps each customer's LLM recommendations in memory so page views do not wait on Ollama.
+ *
+ * Entries are only recomputed when the customer's profile changes (or an entry outgrows
+ * {@code max-age}); until the refresh lands the previous recommendations are served, marked
+ * stale. Refreshes are drained by a scheduled task that handles at most {@code refresh-batch}
+ * customers per {@code refresh-interval}, one at a time on a dedicated thread, so invalidation
+ * storms cannot flood Ollama and model latency never delays other scheduled tasks. Only a
+ * customer seen for the first time is computed on the request thread.
+ */
+@Service
+public class RecommendationMaterializer {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationMaterializer.class);
+
+    public record Materialized(List<ProductView> products, Instant computedAt, boolean stale) {
+        Materialized markStale() {
+            return new Materialized(products, computedAt, true);
+        }
+    }
+
+    private final AIRecommendationService aiRecommendationService;
+    private final CustomerRepository customerRepository;
+    private final Duration maxAge;
+    private final int refreshBatch;
+    private final boolean warmOnStartup;
+    private final Map<Long, Materialized> store = new ConcurrentHashMap<>();
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Long> refreshQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean refreshRunning = new AtomicBoolean();
+    private final ExecutorService refresher =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("recommendation-refresher").factory());
+
+    public RecommendationMaterializer(AIRecommendationService aiRecommendationService,
+                                      CustomerRepository customerRepository,
+                                      @Value("${smartcart.recommendations.max-age:24h}") Duration maxAge,
+                                      @Value("${smartcart.recommendations.refresh-batch:5}") int refreshBatch,
+                                      @Value("${smartcart.recommendations.warm-on-startup:true}") boolean warmOnStartup) {
+        this.aiRecommendationService = aiRecommendationService;
+        this.customerRepository = customerRepository;
+        this.maxAge = maxAge;
+        this.refreshBatch = refreshBatch;
+        this.warmOnStartup = warmOnStartup;
+    }
+
+    public Materialized getRecommendations(long customerId) {
+        Materialized materialized = store.get(customerId);
+        if (materialized == null) {
+            log.info("No materialized recommendations for customer {}, computing now", customerId);
+            return refresh(customerId);
+        }
+        if (materialized.stale() || materialized.computedAt().plus(maxAge).isBefore(Instant.now())) {
+            scheduleRefresh(customerId);
+        }
+        return materialized;
+    }
+
+    @EventListener
+    public void onCustomerProfileChanged(CustomerProfileChangedEvent event) {
+        store.computeIfPresent(event.customerId(), (id, materialized) -> materialized.markStale());
+        scheduleRefresh(event.customerId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmOnStartup) {
+            customerRepository.findAll().stream().map(Customer::getId).forEach(this::scheduleRefresh);
+            log.info("Queued {} customers for background recommendation materialization", queued.size());
+        }
+    }
+
+    /**
+     * Hands the batch to the refresher thread: each refresh may wait on Ollama for the whole
+     * recommendation timeout, which must not hold up the scheduler's other tasks.
+     */
+    @Scheduled(fixedDelayString = "${smartcart.recommendations.refresh-interval:1s}")
+    public void refreshQueued() {
+        if (refreshRunning.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    refreshBatch();
+                } finally {
+                    refreshRunning.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * One refresh interval's work: at most {@code refresh-batch} queued customers.
+     */
+    void refreshBatch() {
+        for (int i = 0; i < refreshBatch; i++) {
+            Long customerId = refreshQueue.poll();
+            if (customerId == null) {
+                return;
+            }
+            queued.remove(customerId);
+            try {
+                refresh(customerId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh recommendations for customer {}: {}", customerId, e.getMessage());
+            }
+        }
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public int pendingRefreshes() {
+        return queued.size();
+    }
+
+    private void scheduleRefresh(long customerId) {
+        if (queued.add(customerId)) {
+            refreshQueue.add(customerId);
+        }
+    }
+
+    /**
+     * While the chat model is unavailable an existing entry is kept as it is (it stays stale and
+     * is retried on a later access); a customer without one gets category-based fallback
+     * recommendations, stored stale so the model's answer replaces them once it is back.
+     */
+    private Materialized refresh(long customerId) {
+        List<ProductView> recommendations;
+        boolean degraded = false;
+        try {
+            recommendations = aiRecommendationService.getPersonalizedRecommendations(customerId);
+        } catch (LlmUnavailableException e) {
+            Materialized previous = store.get(customerId);
+            if (previous != null) {
+                log.warn("Keeping previous recommendations for customer {}: {}", customerId, e.getMessage());
+                return previous;
+            }
+            recommendations = aiRecommendationService.fallbackRecommendations(customerId);
+            degraded = true;
+        }
+        Materialized materialized = new Materialized(recommendations, Instant.now(), degraded);
+        store.put(customerId, materialized);
+        log.debug("Materialized {} recommendations for customer {}", recommendations.size(), customerId);
+        return materialized;
+    }
+}
@@ -0,0 +1,43 @@
+package com.javaguy.smartcart.catalog;
+
+import com.javaguy.smartcart.dto.ProductView;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void lookupsByIdAndCategory() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(1, List.of(
+                product(30, "Lamp", "Home"), product(10, "Phone", "Electronics"), product(20, "Laptop", "Electronics")));
+
+        assertEquals("Laptop", snapshot.get(20).orElseThrow().name());
+        assertTrue(snapshot.get(15).isEmpty());
+        assertEquals(List.of(10L, 20L, 30L), snapshot.all().stream().map(ProductView::id).toList());
+        assertEquals(List.of("Phone", "Laptop"), snapshot.byCategory("Electronics").stream().map(ProductView::name).toList());
+        assertEquals(List.of(30L, 10L), snapshot.getAll(List.of(30L, 99L, 10L)).stream().map(ProductView::id).toList());
+    }
+
+    @Test
+    void writesProduceANewVersionAndLeaveTheOldOneUntouched() {
+        CatalogSnapshot first = CatalogSnapshot.of(1, List.of(product(10, "Phone", "Electronics"), product(30, "Lamp", "Home")));
+
+        CatalogSnapshot second = first.withProducts(List.of(product(30, "Desk Lamp", "Electronics"), product(20, "Book", "Books")));
+
+        assertEquals(2, second.version());
+        assertEquals(List.of("Phone", "Book", "Desk Lamp"), second.all().stream().map(ProductView::name).toList());
+        assertEquals(List.of("Phone", "Desk Lamp"), second.byCategory("Electronics").stream().map(ProductView::name).toList());
+        assertTrue(second.byCategory("Home").isEmpty());
+        assertEquals(List.of("Phone", "Lamp"), first.all().stream().map(ProductView::name).toList());
+        assertEquals("\"1\"", first.etag());
+    }
+
+    private static ProductView product(long id, String name, String category) {
+        return new ProductView(id, name, null, BigDecimal.ONE, category, "Acme", 1, null, null, List.of());
+    }
+}
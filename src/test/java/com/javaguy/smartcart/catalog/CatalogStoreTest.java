@@ -0,0 +1,71 @@
+package com.javaguy.smartcart.catalog;
+
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.event.StockChangedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogStoreTest {
+
+    @Test
+    void stockChangesOnlyMakeANewVersionWhenAvailabilityChanges() {
+        CatalogStore store = new CatalogStore(repositoryWith(product(1, "Lamp", 5), product(2, "Chair", 0)));
+        store.load();
+        long loaded = store.snapshot().version();
+
+        store.onStockChanged(new StockChangedEvent(Map.of(1L, 3)));
+        store.onStockChanged(new StockChangedEvent(Map.of(1L, 2)));
+        assertEquals(loaded, store.snapshot().version());
+        assertEquals(5, stockOf(store, 1));
+
+        store.onStockChanged(new StockChangedEvent(Map.of(2L, 4)));
+        assertEquals(loaded + 1, store.snapshot().version());
+        assertEquals(2, stockOf(store, 1));
+        assertEquals(4, stockOf(store, 2));
+
+        store.onStockChanged(new StockChangedEvent(Map.of(1L, 0)));
+        assertEquals(loaded + 2, store.snapshot().version());
+        assertEquals(0, stockOf(store, 1));
+    }
+
+    @Test
+    void savedProductsPublishTheHeldBackCounts() {
+        CatalogStore store = new CatalogStore(repositoryWith(product(1, "Lamp", 5), product(2, "Chair", 7)));
+        store.load();
+        store.onStockChanged(new StockChangedEvent(Map.of(1L, 3, 2L, 6)));
+
+        store.onProductsSaved(new ProductsSavedEvent(List.of(product(2, "Armchair", 9))));
+
+        assertEquals(3, stockOf(store, 1));
+        // the inventory's count wins over the one the saved product carries
+        assertEquals(6, stockOf(store, 2));
+        assertEquals("Armchair", store.snapshot().get(2).orElseThrow().name());
+    }
+
+    private static int stockOf(CatalogStore store, long productId) {
+        return store.snapshot().get(productId).orElseThrow().stockQuantity();
+    }
+
+    private static ProductRepository repositoryWith(Product... products) {
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllWithTags" -> List.of(products);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Product product(long id, String name, int stock) {
+        Product product = new Product(name, null, BigDecimal.ONE, "Home", "Acme");
+        product.setId(id);
+        product.setStockQuantity(stock);
+        return product;
+    }
+}
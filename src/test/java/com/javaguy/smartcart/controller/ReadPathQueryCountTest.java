@@ -0,0 +1,151 @@
+package com.javaguy.smartcart.controller;
+
+import com.javaguy.smartcart.entity.Customer;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.repository.CustomerRepository;
+import com.javaguy.smartcart.repository.ProductRepository;
+import com.javaguy.smartcart.service.AIRecommendationService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The read endpoints must issue a fixed number of SQL statements however many rows and
+ * collection elements there are; product reads come from the catalog snapshot and issue none.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "smartcart.semantic.embedding-provider=local",
+        "smartcart.recommendations.warm-on-startup=false"
+})
+@AutoConfigureMockMvc
+class ReadPathQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AIRecommendationService recommendationService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void addRows() {
+        if (productRepository.count() < 20) {
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Product product = new Product("Gadget " + i, "Test gadget", new BigDecimal("9.99"), "Electronics", "Acme");
+                product.setTags(List.of("gadget", "test", "tag" + i));
+                products.add(product);
+            }
+            eventPublisher.publishEvent(new ProductsSavedEvent(productRepository.saveAll(products)));
+
+            List<Customer> customers = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Customer customer = new Customer("customer" + i + "@example.com", "Test", "Customer" + i);
+                customer.setPreferences(List.of("Electronics", "Books"));
+                customer.setPurchaseHistory(List.of(1L, 2L, 3L));
+                customers.add(customer);
+            }
+            customerRepository.saveAll(customers);
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void listingProductsIsServedFromTheCatalogSnapshot() throws Exception {
+        statistics.clear();
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[5].tags.length()").value(3));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void productByIdAndCategoryAreServedFromTheCatalogSnapshot() throws Exception {
+        statistics.clear();
+        mockMvc.perform(get("/api/products/1")).andExpect(status().isOk());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        mockMvc.perform(get("/api/products/category/Electronics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].tags").isArray());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void unchangedCatalogAnswersConditionalRequestsWithNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/products/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    void listingCustomersReadsEachCollectionOnce() throws Exception {
+        statistics.clear();
+        mockMvc.perform(get("/api/customers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[3].preferences.length()").value(2))
+                .andExpect(jsonPath("$[3].purchaseHistory.length()").value(3));
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * The customer's purchase history is longer than the batch fetch size; the co-purchase matrix
+     * was built before the customer existed, so the fallback goes to the database.
+     */
+    @Test
+    void recommendationsReadEachCustomerCollectionOnce() {
+        Customer customer = new Customer("heavy.buyer@example.com", "Heavy", "Buyer");
+        customer.setPreferences(List.of("Electronics", "Books"));
+        List<Long> purchases = new ArrayList<>();
+        for (long i = 0; i < 250; i++) {
+            purchases.add(i % 10 + 1);
+        }
+        customer.setPurchaseHistory(purchases);
+        long customerId = customerRepository.save(customer).getId();
+
+        statistics.clear();
+        recommendationService.createRecommendationPrompt(customerId);
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        assertEquals(5, recommendationService.fallbackRecommendations(customerId).size());
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,72 @@
+package com.javaguy.smartcart.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockLedgerTest {
+
+    @Test
+    void neverOversellsUnderConcurrentReservations() throws Exception {
+        StockLedger ledger = new StockLedger();
+        ledger.track(1L, 1000);
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        if (ledger.reserve(1L, 1)) {
+                            ledger.commit(1L, 1);
+                            sold.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, sold.get());
+        assertEquals(0, ledger.available(1L).orElseThrow());
+        assertEquals(Map.of(1L, 0), ledger.drainChanges());
+    }
+
+    @Test
+    void heldUnitsCountAsOnHandUntilSoldAndChangesAreCoalesced() {
+        StockLedger ledger = new StockLedger();
+        ledger.track(1L, 10);
+        ledger.track(2L, 5);
+
+        assertTrue(ledger.reserve(1L, 4));
+        assertTrue(ledger.reserve(1L, 3));
+        assertFalse(ledger.reserve(1L, 4));
+        assertFalse(ledger.reserve(3L, 1));
+        assertEquals(3, ledger.available(1L).orElseThrow());
+        assertEquals(Map.of(1L, 10), ledger.drainChanges());
+
+        ledger.commit(1L, 4);
+        ledger.release(1L, 3);
+        assertEquals(6, ledger.available(1L).orElseThrow());
+        assertEquals(Map.of(1L, 6), ledger.drainChanges());
+        assertTrue(ledger.drainChanges().isEmpty());
+
+        // the ledger is newer than stock read back from the database
+        ledger.track(1L, 10);
+        assertEquals(6, ledger.available(1L).orElseThrow());
+    }
+}
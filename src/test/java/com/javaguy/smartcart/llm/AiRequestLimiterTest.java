@@ -0,0 +1,81 @@
+package com.javaguy.smartcart.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiRequestLimiterTest {
+
+    @Test
+    void queuesUpToTheLimitAndRejectsTheRestWithARetryHint() throws Exception {
+        AiRequestLimiter limiter = new AiRequestLimiter(new SimpleMeterRegistry(), 1, 1, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = limiter.submit("search", () -> {
+            started.countDown();
+            await(release);
+            return "first";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS), "first request did not start");
+        CompletableFuture<String> queued = limiter.submit("search", () -> "second");
+        awaitQueued(limiter, 1);
+        CompletableFuture<String> rejected = limiter.submit("search", () -> "third");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        AiRequestRejectedException rejection = assertInstanceOf(AiRequestRejectedException.class, failure.getCause());
+        assertTrue(rejection.getRetryAfter().toMillis() >= 1000);
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.stats().active());
+        assertEquals(0, limiter.stats().queued());
+    }
+
+    @Test
+    void requestsWaitingLongerThanTheQueueTimeoutAreRejected() throws Exception {
+        AiRequestLimiter limiter = new AiRequestLimiter(new SimpleMeterRegistry(), 1, 10, Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = limiter.submit("recommendations", () -> {
+            await(release);
+            return "done";
+        });
+
+        CompletableFuture<String> timedOut = limiter.submit("recommendations", () -> "late");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> timedOut.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AiRequestRejectedException.class, failure.getCause());
+        release.countDown();
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A queued request has no code of its own running yet, so there is nothing to count down.
+     */
+    private static void awaitQueued(AiRequestLimiter limiter, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.stats().queued() < queued && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(queued, limiter.stats().queued(), "requests not queued within 5s");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
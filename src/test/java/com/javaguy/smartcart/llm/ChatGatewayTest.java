@@ -0,0 +1,84 @@
+package com.javaguy.smartcart.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatGatewayTest {
+
+    @Test
+    void cancelledCallerLeavesCoalescedCallersWithTheRealResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger modelCalls = new AtomicInteger();
+        ChatGateway gateway = gateway(new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                modelCalls.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("model call interrupted", e);
+                }
+                return new ChatResponse(List.of(new Generation(new AssistantMessage("sneakers"))));
+            }
+
+            @Override
+            public ChatOptions getDefaultOptions() {
+                return ChatOptions.builder().model("stub").build();
+            }
+        });
+
+        AtomicBoolean leaderInterrupted = new AtomicBoolean();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> {
+                String result = gateway.call(LlmOperation.SEARCH, "shoes");
+                leaderInterrupted.set(Thread.currentThread().isInterrupted());
+                return result;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS), "model call did not start");
+            Future<String> follower = executor.submit(() -> gateway.call(LlmOperation.SEARCH, "shoes"));
+            // the follower is parked on the leader's call, so only the gateway's stats can tell
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (gateway.stats().deduplicated() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, gateway.stats().deduplicated(), "follower not coalesced within 5s");
+
+            // the speculative search gives up on its tier
+            leader.cancel(true);
+            release.countDown();
+
+            assertEquals("sneakers", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(leaderInterrupted.get());
+        assertEquals(1, modelCalls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.circuitState());
+    }
+
+    private static ChatGateway gateway(ChatModel chatModel) {
+        return new ChatGateway(chatModel, new SimpleMeterRegistry(),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5),
+                4, Duration.ofMillis(500),
+                20, 10, 0.5, Duration.ofSeconds(10), 0.8, Duration.ofSeconds(30), 3);
+    }
+}
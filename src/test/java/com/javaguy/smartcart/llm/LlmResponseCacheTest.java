@@ -0,0 +1,45 @@
+package com.javaguy.smartcart.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LlmResponseCacheTest {
+
+    @Test
+    void servesRepeatedKeysFromMemoryAndEvictsLeastRecentlyUsed() {
+        LlmResponseCache cache = new LlmResponseCache(2, Duration.ofHours(1));
+        AtomicInteger calls = new AtomicInteger();
+        LlmResponseCache.Key shoes = new LlmResponseCache.Key("llama3.2", "keywords", "shoes");
+        LlmResponseCache.Key laptop = new LlmResponseCache.Key("llama3.2", "keywords", "laptop");
+        LlmResponseCache.Key phone = new LlmResponseCache.Key("llama3.2", "keywords", "phone");
+
+        cache.get(shoes, () -> "sneakers" + calls.incrementAndGet());
+        cache.get(laptop, () -> "notebook" + calls.incrementAndGet());
+        assertEquals("sneakers1", cache.get(shoes, () -> "sneakers" + calls.incrementAndGet()));
+        cache.get(phone, () -> "mobile" + calls.incrementAndGet());
+        cache.get(laptop, () -> "notebook" + calls.incrementAndGet());
+
+        assertEquals(4, calls.get());
+        LlmResponseCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(4, stats.misses());
+        assertEquals(2, stats.evictions());
+    }
+
+    @Test
+    void expiredAndInvalidatedEntriesAreReloaded() {
+        LlmResponseCache expiring = new LlmResponseCache(10, Duration.ZERO);
+        LlmResponseCache.Key key = new LlmResponseCache.Key("llama3.2", "keywords", "shoes");
+        expiring.get(key, () -> "first");
+        assertEquals("second", expiring.get(key, () -> "second"));
+
+        LlmResponseCache cache = new LlmResponseCache(10, Duration.ofHours(1));
+        cache.get(key, () -> "first");
+        assertEquals(1, cache.invalidate("shoes"));
+        assertEquals("second", cache.get(key, () -> "second"));
+    }
+}
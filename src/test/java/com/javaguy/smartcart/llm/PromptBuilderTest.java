@@ -0,0 +1,52 @@
+package com.javaguy.smartcart.llm;
+
+import com.javaguy.smartcart.dto.ProductView;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptBuilderTest {
+
+    @Test
+    void keepsLongHistoriesWithinTheBudgetNewestFirstAndSummarizesTheRest() {
+        PromptBuilder builder = new PromptBuilder(300, 10, 64);
+        List<ProductView> purchasesNewestFirst = new ArrayList<>();
+        for (long id = 1000; id > 0; id--) {
+            purchasesNewestFirst.add(product(id, id % 4 == 0 ? "Books" : "Electronics"));
+        }
+        List<ProductView> candidates = new ArrayList<>();
+        for (long id = 2000; id < 2050; id++) {
+            candidates.add(product(id, "Electronics"));
+        }
+
+        Prompt prompt = builder.recommendationPrompt(List.of("electronics"), purchasesNewestFirst, candidates, 5);
+
+        assertTrue(PromptBuilder.estimateTokens(prompt.getContents()) <= 300);
+        assertEquals(PromptBuilder.RECOMMENDATION_INSTRUCTIONS, prompt.getInstructions().get(0).getText());
+        String user = prompt.getUserMessage().getText();
+        assertTrue(user.indexOf("Product 1000 ") < user.indexOf("Product 999 "));
+        assertFalse(user.contains("Product 1 "));
+        assertTrue(user.contains(" earlier, mostly Electronics "));
+        assertTrue(user.contains("2000: Product 2000 [Electronics]"));
+        assertEquals(64, prompt.getOptions().getMaxTokens());
+    }
+
+    @Test
+    void readsJsonArraysFromChattyResponses() {
+        assertEquals(List.of(12L, 7L, 3L), PromptBuilder.parseIds("Here you go: [12, \"7\", 3, \"x\"] enjoy"));
+        assertTrue(PromptBuilder.parseIds("I recommend headphones").isEmpty());
+        assertEquals(List.of("headphones", "audio"), PromptBuilder.parseStrings("[\"headphones\", \" audio \"]"));
+        assertEquals(List.of("headphones", "audio", "sony"), PromptBuilder.parseStrings("headphones, audio\nsony"));
+    }
+
+    private static ProductView product(long id, String category) {
+        return new ProductView(id, "Product " + id, "", BigDecimal.TEN, category, "Brand", 1, null, null, List.of());
+    }
+}
@@ -0,0 +1,60 @@
+package com.javaguy.smartcart.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoPurchaseMatrixTest {
+
+    @Test
+    void ranksByCosineSimilarityAndSkipsOwnedProducts() {
+        CoPurchaseMatrix matrix = new CoPurchaseMatrix();
+        matrix.setHistory(1, List.of(10L, 20L));
+        matrix.setHistory(2, List.of(10L, 20L, 30L));
+        matrix.setHistory(3, List.of(30L, 40L));
+        matrix.setHistory(4, List.of(30L, 50L));
+
+        // 20 is bought by the same two customers as 10; 30 by one of them, and by two others
+        assertEquals(List.of(20L, 30L), ids(matrix.neighbours(10, 5)));
+        matrix.setHistory(5, List.of(10L));
+        assertEquals(List.of(20L), ids(matrix.recommendFor(5, 1)));
+        assertTrue(matrix.recommendFor(99, 5).isEmpty());
+    }
+
+    @Test
+    void incrementalUpdatesMatchARebuild() {
+        Random random = new Random(7);
+        CoPurchaseMatrix incremental = new CoPurchaseMatrix();
+        Map<Long, List<Long>> histories = new HashMap<>();
+        for (int change = 0; change < 2000; change++) {
+            long customerId = random.nextInt(50);
+            List<Long> history = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                history.add((long) random.nextInt(40));
+            }
+            histories.put(customerId, history);
+            incremental.setHistory(customerId, history);
+        }
+        CoPurchaseMatrix rebuilt = new CoPurchaseMatrix();
+        histories.forEach(rebuilt::setHistory);
+
+        assertEquals(rebuilt.productCount(), incremental.productCount());
+        for (long productId = 0; productId < 40; productId++) {
+            assertEquals(rebuilt.neighbours(productId, 40), incremental.neighbours(productId, 40));
+        }
+        for (long customerId = 0; customerId < 50; customerId++) {
+            assertEquals(rebuilt.recommendFor(customerId, 10), incremental.recommendFor(customerId, 10));
+        }
+    }
+
+    private static List<Long> ids(List<CoPurchaseMatrix.Neighbour> neighbours) {
+        return neighbours.stream().map(CoPurchaseMatrix.Neighbour::productId).toList();
+    }
+}
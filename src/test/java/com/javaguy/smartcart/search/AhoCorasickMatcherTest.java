@@ -0,0 +1,29 @@
+package com.javaguy.smartcart.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void findsOverlappingPatternsCaseInsensitively() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.build(Map.of(
+                "MacBook Pro", new long[]{2},
+                "Electronics", new long[]{2, 5},
+                "book", new long[]{7},
+                "he", new long[]{9},
+                "she", new long[]{10}));
+
+        assertArrayEquals(new long[]{2, 5, 7}, matcher.match("Try a MACBOOK PRO or anything in electronics"));
+        assertArrayEquals(new long[]{9, 10}, matcher.match("ushers"));
+        assertArrayEquals(new long[0], matcher.match("running shoes"));
+    }
+
+    @Test
+    void emptyMatcherFindsNothing() {
+        assertArrayEquals(new long[0], AhoCorasickMatcher.empty().match("anything"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.javaguy.smartcart.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class BitSlicedIndexTest {
+
+    @Test
+    void rangeQueriesMatchALinearScan() {
+        Random random = new Random(42);
+        long[] values = new long[2000];
+        BitSlicedIndex index = new BitSlicedIndex();
+        for (int id = 0; id < values.length; id++) {
+            values[id] = random.nextInt(100_000);
+            index.set(id, values[id]);
+        }
+        // overwrite some values, as a product update would
+        for (int id = 0; id < values.length; id += 7) {
+            values[id] = random.nextInt(100_000);
+            index.set(id, values[id]);
+        }
+        long[][] ranges = {{0, 0}, {0, 99_999}, {1_000, 5_000}, {50_000, 50_000}, {99_000, 1_000_000}, {7, 3}};
+        for (long[] range : ranges) {
+            int[] expected = IntStream.range(0, values.length)
+                    .filter(id -> values[id] >= range[0] && values[id] <= range[1])
+                    .toArray();
+            assertArrayEquals(expected, index.between(range[0], range[1]).toArray());
+        }
+    }
+
+    @Test
+    void removedIdsAreNoLongerReturned() {
+        BitSlicedIndex index = new BitSlicedIndex();
+        index.set(1, 500);
+        index.set(2, 1500);
+        index.remove(1);
+        assertArrayEquals(new int[]{2}, index.between(0, Long.MAX_VALUE).toArray());
+    }
+}
@@ -0,0 +1,111 @@
+package com.javaguy.smartcart.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    @Test
+    void approximatesExactNearestNeighbours() {
+        int dimensions = 32;
+        Random random = new Random(7);
+        float[][] vectors = new float[2000][];
+        HnswIndex index = new HnswIndex(dimensions, 16, 100);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random, dimensions);
+            index.add(i, vectors[i]);
+        }
+
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random, dimensions);
+            long exact = IntStream.range(0, vectors.length).boxed()
+                    .max(Comparator.comparingDouble(i -> cosine(query, vectors[i])))
+                    .orElseThrow();
+            List<HnswIndex.Match> matches = index.search(query, 10, 64);
+            if (matches.stream().anyMatch(match -> match.id() == exact)) {
+                hits++;
+            }
+        }
+        assertTrue(hits >= queries * 0.9, "recall too low: " + hits + "/" + queries);
+    }
+
+    @Test
+    void reAddedIdsAreReturnedOnce() {
+        HnswIndex index = new HnswIndex(2, 4, 10);
+        index.add(1L, new float[]{1, 0});
+        index.add(2L, new float[]{0, 1});
+        index.add(1L, new float[]{0.9f, 0.1f});
+
+        List<HnswIndex.Match> matches = index.search(new float[]{1, 0}, 5, 10);
+        assertEquals(List.of(1L, 2L), matches.stream().map(HnswIndex.Match::id).toList());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void snapshotAnswersLikeTheGraphItWasWrittenFrom() throws IOException {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(16, 8, 50);
+        for (int i = 0; i < 500; i++) {
+            index.add(i % 400, randomVector(random, 16));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        HnswIndex loaded = HnswIndex.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(index.size(), loaded.size());
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, 16);
+            assertEquals(index.search(query, 10, 32), loaded.search(query, 10, 32));
+        }
+    }
+
+    @Test
+    void localEmbeddingsAreDeterministicAndPlaceRelatedTextsCloser() {
+        LocalHashingEmbeddingModel model = new LocalHashingEmbeddingModel(256);
+        float[] shoes = model.embed("Running Shoes. Sports. Nike. athletic footwear");
+        float[] query = model.embed("shoes for running");
+        float[] laptop = model.embed("MacBook Pro. Electronics. Apple. laptop");
+
+        assertArrayEquals(shoes, model.embed("Running Shoes. Sports. Nike. athletic footwear"));
+        assertTrue(cosine(query, shoes) > cosine(query, laptop));
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot / Math.sqrt(norm(a) * norm(b));
+    }
+
+    private static double norm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,67 @@
+package com.javaguy.smartcart.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    @Test
+    void ranksDocumentsMatchingMoreQueryTermsFirst() {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1L, TextAnalyzer.tokenize("Running Shoes comfortable athletic shoes for running"));
+        index.add(2L, TextAnalyzer.tokenize("MacBook Pro high-performance laptop"));
+        index.add(3L, TextAnalyzer.tokenize("Dress shoes leather"));
+
+        assertEquals(List.of(1L, 3L), index.search(TextAnalyzer.tokenize("running shoes"), 10));
+        assertEquals(List.of(1L), index.search(TextAnalyzer.tokenize("running shoes"), 1));
+    }
+
+    @Test
+    void expandsUnknownTokensAsPrefixes() {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1L, TextAnalyzer.tokenize("MacBook Pro laptop"));
+
+        assertEquals(List.of(1L), index.search(TextAnalyzer.tokenize("lap"), 10));
+        assertTrue(index.search(TextAnalyzer.tokenize("la"), 10).isEmpty());
+    }
+
+    @Test
+    void reAddingProductReplacesItsPreviousText() {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1L, TextAnalyzer.tokenize("old description"));
+        index.add(1L, TextAnalyzer.tokenize("new description"));
+
+        assertTrue(index.search(TextAnalyzer.tokenize("old"), 10).isEmpty());
+        assertEquals(List.of(1L), index.search(TextAnalyzer.tokenize("description"), 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void snapshotAnswersLikeTheIndexItWasWrittenFrom() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.add(1L, TextAnalyzer.tokenize("Running Shoes comfortable athletic shoes for running"));
+        index.add(2L, TextAnalyzer.tokenize("old laptop"));
+        index.add(3L, TextAnalyzer.tokenize("Dress shoes leather"));
+        index.add(2L, TextAnalyzer.tokenize("MacBook Pro high-performance laptop"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        InvertedIndex loaded = InvertedIndex.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+
+        for (String query : List.of("running shoes", "lap", "old", "leather laptop")) {
+            List<String> tokens = TextAnalyzer.tokenize(query);
+            assertEquals(index.search(tokens, 10), loaded.search(tokens, 10), query);
+        }
+        assertEquals(3, loaded.size());
+        loaded.add(4L, TextAnalyzer.tokenize("trail running shoes"));
+        assertEquals(List.of(4L, 1L, 3L), loaded.search(TextAnalyzer.tokenize("trail shoes"), 10));
+    }
+}
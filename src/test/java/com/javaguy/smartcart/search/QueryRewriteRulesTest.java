@@ -0,0 +1,65 @@
+package com.javaguy.smartcart.search;
+
+import com.javaguy.smartcart.entity.QueryRewrite;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryRewriteRulesTest {
+
+    @Test
+    void appliesLearnedRewritesToVariantsWhileTheyKeepFindingProducts() {
+        QueryRewriteRules rules = new QueryRewriteRules(0.6, 100);
+        rules.learn("something to listen to music", "Headphones, earbuds, audio", true);
+
+        assertEquals(Optional.of("headphones earbuds audio"), rules.rewrite("Music: something to listen to"));
+
+        rules.recordOutcome("something to listen to music", false);
+        assertTrue(rules.rewrite("something to listen to music").isEmpty());
+
+        // a suggestion that found nothing is remembered but never applied
+        rules.learn("gizmo", "gadget", false);
+        assertTrue(rules.rewrite("gizmo").isEmpty());
+        rules.learn("gizmo", "widget", true);
+        assertEquals(Optional.of("widget"), rules.rewrite("gizmo"));
+
+        // queries too long for the table are not learned, so they never reach the write-behind
+        String longQuery = IntStream.range(0, QueryRewriteRules.MAX_QUERY_LENGTH / 4)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+        assertTrue(QueryRewriteRules.key(longQuery).length() > QueryRewriteRules.MAX_QUERY_LENGTH);
+        rules.learn(longQuery, "widget", true);
+        assertTrue(rules.rewrite(longQuery).isEmpty());
+        assertTrue(rules.review(longQuery, QueryRewrite.Status.APPROVED, "widget").isEmpty());
+    }
+
+    @Test
+    void reviewedRulesOverrideLearningAndSurvivePruning() {
+        QueryRewriteRules rules = new QueryRewriteRules(0.6, 100);
+        rules.learn("comfy shoes", "sneakers", true);
+        rules.learn("cheap phone", "budget smartphone", true);
+        rules.review("cheap phone", QueryRewrite.Status.REJECTED, null);
+        rules.learn("cheap phone", "budget smartphone", true);
+        assertTrue(rules.rewrite("cheap phone").isEmpty());
+
+        rules.review("laptop bag", QueryRewrite.Status.APPROVED, "Backpack");
+        assertEquals(Optional.of("backpack"), rules.rewrite("bag laptop"));
+
+        assertEquals(1, rules.prune(0.5, LocalDateTime.now().plusMinutes(1)));
+        assertEquals(2, rules.size());
+
+        Map<String, QueryRewriteRules.Rule> changes = rules.drainChanges();
+        assertEquals(3, changes.size());
+        assertNull(changes.get("comfy shoes"));
+        assertEquals(QueryRewrite.Status.REJECTED, changes.get("cheap phone").status());
+        assertTrue(rules.drainChanges().isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package com.javaguy.smartcart.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTest {
+
+    @Test
+    void findsMisspelledTermsRankedByEditDistance() {
+        TrigramIndex index = new TrigramIndex(2);
+        index.add(1L, TextAnalyzer.tokenize("MacBook Pro Electronics Apple laptop"));
+        index.add(2L, TextAnalyzer.tokenize("Running Shoes Sports Nike athletic"));
+        index.add(3L, TextAnalyzer.tokenize("Dress shoes Fashion leather"));
+        index.add(4L, TextAnalyzer.tokenize("Running socks Sports"));
+
+        assertEquals(List.of(1L), ids(index.search(TextAnalyzer.tokenize("macbok"), 10)));
+        // "runing shoes" matches both words of product 2 with one edit in total
+        assertEquals(List.of(2L, 3L, 4L), ids(index.search(TextAnalyzer.tokenize("runing shoes"), 10)));
+        assertEquals(List.of(2L), ids(index.search(TextAnalyzer.tokenize("nkie"), 10)));
+        assertTrue(index.search(TextAnalyzer.tokenize("tablet"), 10).isEmpty());
+    }
+
+    @Test
+    void shortTermsOnlyMatchExactlyAndUpdatesReplaceTerms() {
+        TrigramIndex index = new TrigramIndex(2);
+        index.add(1L, TextAnalyzer.tokenize("Pro tv stand"));
+        assertTrue(index.search(TextAnalyzer.tokenize("tx"), 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search(TextAnalyzer.tokenize("tv"), 10)));
+
+        index.add(1L, TextAnalyzer.tokenize("Monitor arm"));
+        assertTrue(index.search(TextAnalyzer.tokenize("stnad"), 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search(TextAnalyzer.tokenize("monitr"), 10)));
+    }
+
+    @Test
+    void editDistanceCountsTranspositionsAsOneEdit() {
+        assertEquals(1, TrigramIndex.editDistance("nkie", "nike", 2));
+        assertEquals(2, TrigramIndex.editDistance("sheos", "shoe", 2));
+        assertEquals(-1, TrigramIndex.editDistance("laptop", "tablet", 2));
+    }
+
+    private static List<Long> ids(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::productId).toList();
+    }
+}
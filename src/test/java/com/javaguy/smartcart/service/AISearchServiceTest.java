@@ -0,0 +1,218 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.search.LocalHashingEmbeddingModel;
+import com.javaguy.smartcart.search.SemanticSearchIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The speculative AI search tiers against stub chat and embedding models, so a slow or failing
+ * Ollama can be simulated; the local tiers find nothing for the queries used here. Query
+ * embeddings time out after two seconds, chat calls after ten and the latency budget is three.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:aisearch",
+        "smartcart.semantic.embedding-provider=ollama",
+        "smartcart.recommendations.warm-on-startup=false",
+        "smartcart.search.execution-mode=speculative",
+        "smartcart.search.latency-budget=3s",
+        "smartcart.llm.timeouts.search=10s",
+        "smartcart.llm.timeouts.search-embedding=2s"
+})
+class AISearchServiceTest {
+
+    @Autowired
+    private AISearchService searchService;
+
+    @Autowired
+    private SemanticSearchIndex semanticIndex;
+
+    @Autowired
+    private StubChatModel chatModel;
+
+    @Autowired
+    private StubEmbeddingModel embeddingModel;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void resetModels() throws InterruptedException {
+        chatModel.answer = "[]";
+        chatModel.delay = Duration.ZERO;
+        embeddingModel.embedQueryAs = null;
+        embeddingModel.queryDelay = Duration.ZERO;
+        embeddingModel.queryFailure = null;
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!semanticIndex.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(semanticIndex.isReady(), "semantic index not built within 10s");
+    }
+
+    @Test
+    void failingQueryEmbeddingDegradesTheSemanticTier() {
+        embeddingModel.queryFailure = new IllegalStateException("connection refused");
+        double degraded = semanticTierCount("degraded");
+
+        List<ProductView> results = searchService.intelligentSearch("xylophone quartet");
+
+        assertTrue(results.isEmpty());
+        assertEquals(degraded + 1, semanticTierCount("degraded"));
+    }
+
+    @Test
+    void hangingQueryEmbeddingTimesOutAndDegradesTheSemanticTier() {
+        embeddingModel.queryDelay = Duration.ofSeconds(30);
+        double degraded = semanticTierCount("degraded");
+        long startNanos = System.nanoTime();
+
+        List<ProductView> results = searchService.intelligentSearch("harpsichord sonata");
+
+        assertTrue(results.isEmpty());
+        assertTrue(elapsedSince(startNanos).compareTo(Duration.ofSeconds(3)) < 0);
+        assertEquals(degraded + 1, semanticTierCount("degraded"));
+    }
+
+    @Test
+    void enhancedHitIsReturnedWithoutWaitingForTheSemanticTier() {
+        chatModel.answer = "[\"laptop\"]";
+        embeddingModel.queryDelay = Duration.ofSeconds(30);
+        double semanticRuns = semanticTierCount();
+        long startNanos = System.nanoTime();
+
+        List<ProductView> results = searchService.intelligentSearch("clavichord etude");
+
+        assertEquals(List.of("MacBook Pro"), results.stream().map(ProductView::name).toList());
+        assertTrue(elapsedSince(startNanos).compareTo(Duration.ofSeconds(2)) < 0);
+        // the semantic tier is still waiting on its embedding
+        assertEquals(semanticRuns, semanticTierCount());
+    }
+
+    @Test
+    void spentLatencyBudgetReturnsWhatHasCompleted() {
+        chatModel.delay = Duration.ofSeconds(30);
+        embeddingModel.embedQueryAs = "MacBook Pro laptop professional";
+        long startNanos = System.nanoTime();
+
+        List<ProductView> results = searchService.intelligentSearch("theremin nocturne");
+
+        Duration elapsed = elapsedSince(startNanos);
+        assertEquals("MacBook Pro", results.get(0).name());
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(3)) >= 0);
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(10)) < 0);
+    }
+
+    private static Duration elapsedSince(long startNanos) {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    private double semanticTierCount() {
+        return meterRegistry.find("smartcart.search.tier").tag("tier", "semantic").timers().stream()
+                .mapToDouble(Timer::count)
+                .sum();
+    }
+
+    private double semanticTierCount(String outcome) {
+        Timer timer = meterRegistry.find("smartcart.search.tier").tags("tier", "semantic", "outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @TestConfiguration
+    static class StubModels {
+        @Bean
+        @Primary
+        StubChatModel stubChatModel() {
+            return new StubChatModel();
+        }
+
+        @Bean
+        @Primary
+        StubEmbeddingModel stubEmbeddingModel() {
+            return new StubEmbeddingModel();
+        }
+    }
+
+    static class StubChatModel implements ChatModel {
+        volatile String answer = "[]";
+        volatile Duration delay = Duration.ZERO;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("chat call interrupted", e);
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(answer))));
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ChatOptions.builder().model("stub").build();
+        }
+    }
+
+    /**
+     * Embeds the catalog with the local hashing model; single query embeddings can be delayed,
+     * failed or made to embed a different text.
+     */
+    static class StubEmbeddingModel implements EmbeddingModel {
+        private final LocalHashingEmbeddingModel delegate = new LocalHashingEmbeddingModel(64);
+        volatile Duration queryDelay = Duration.ZERO;
+        volatile RuntimeException queryFailure;
+        volatile String embedQueryAs;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            return delegate.call(request);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return delegate.embed(document);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            if (queryFailure != null) {
+                throw queryFailure;
+            }
+            try {
+                Thread.sleep(queryDelay);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("embedding interrupted", e);
+            }
+            return delegate.embed(embedQueryAs != null ? embedQueryAs : text);
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+}
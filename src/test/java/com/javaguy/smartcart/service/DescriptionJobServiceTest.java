@@ -0,0 +1,144 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.DescriptionJobRequest;
+import com.javaguy.smartcart.dto.DescriptionJobStatus;
+import com.javaguy.smartcart.entity.DescriptionJob;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Description jobs against a stub chat model that fails a given number of calls. The circuit
+ * breaker opens after two failed calls in a row and stays open for five seconds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:descriptionjobs",
+        "smartcart.semantic.embedding-provider=local",
+        "smartcart.recommendations.warm-on-startup=false",
+        "smartcart.jobs.descriptions.concurrency=1",
+        "smartcart.llm.circuit-breaker.window-size=2",
+        "smartcart.llm.circuit-breaker.minimum-calls=2",
+        "smartcart.llm.circuit-breaker.failure-rate-threshold=0.6",
+        "smartcart.llm.circuit-breaker.open-duration=5s",
+        "smartcart.llm.circuit-breaker.half-open-calls=1"
+})
+class DescriptionJobServiceTest {
+
+    @Autowired
+    private DescriptionJobService jobService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FailingChatModel chatModel;
+
+    @BeforeEach
+    void resetModel() {
+        chatModel.failuresLeft.set(0);
+    }
+
+    @Test
+    void failedCallIsRetriedWithoutPausingTheJob() throws InterruptedException {
+        List<Long> productIds = saveProducts("Retry");
+        chatModel.failuresLeft.set(1);
+
+        long jobId = jobService.submit(new DescriptionJobRequest(productIds, null)).id();
+
+        DescriptionJobStatus status = awaitStatus(jobId, DescriptionJob.Status.COMPLETED, Duration.ofSeconds(10));
+        assertEquals(2, status.processed());
+        assertEquals(0, status.failed());
+    }
+
+    @Test
+    void openCircuitPausesTheJobUntilTheBreakerLetsCallsThrough() throws InterruptedException {
+        List<Long> productIds = saveProducts("Circuit");
+        chatModel.failuresLeft.set(2);
+
+        long jobId = jobService.submit(new DescriptionJobRequest(productIds, null)).id();
+
+        awaitStatus(jobId, DescriptionJob.Status.PAUSED, Duration.ofSeconds(10));
+        DescriptionJobStatus status = awaitStatus(jobId, DescriptionJob.Status.COMPLETED, Duration.ofSeconds(15));
+        assertEquals(2, status.processed());
+        assertEquals(0, status.failed());
+        assertEquals("A generated description.",
+                productRepository.findById(productIds.get(0)).orElseThrow().getDescription());
+    }
+
+    @Test
+    void productsWithoutBrandOrDescriptionAreDescribed() throws InterruptedException {
+        long productId = productRepository.save(
+                new Product("Bare Stool", null, new BigDecimal("9.99"), "Home", null)).getId();
+
+        long jobId = jobService.submit(new DescriptionJobRequest(List.of(productId), null)).id();
+
+        DescriptionJobStatus status = awaitStatus(jobId, DescriptionJob.Status.COMPLETED, Duration.ofSeconds(10));
+        assertEquals(1, status.processed());
+        assertEquals(0, status.failed());
+        assertEquals("A generated description.", productRepository.findById(productId).orElseThrow().getDescription());
+    }
+
+    private List<Long> saveProducts(String prefix) {
+        return productRepository.saveAll(List.of(
+                        new Product(prefix + " Lamp", "Old description", new BigDecimal("19.99"), "Home", "Lumen"),
+                        new Product(prefix + " Chair", "Old description", new BigDecimal("49.99"), "Home", "Sitwell")))
+                .stream().map(Product::getId).toList();
+    }
+
+    private DescriptionJobStatus awaitStatus(long jobId, DescriptionJob.Status expected, Duration timeout)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        DescriptionJobStatus status = jobService.status(jobId);
+        while (status.status() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            status = jobService.status(jobId);
+        }
+        assertEquals(expected, status.status(), "job " + jobId + " not " + expected + " within " + timeout);
+        return status;
+    }
+
+    @TestConfiguration
+    static class StubModels {
+        @Bean
+        @Primary
+        FailingChatModel failingChatModel() {
+            return new FailingChatModel();
+        }
+    }
+
+    static class FailingChatModel implements ChatModel {
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("model crashed");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("A generated description."))));
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ChatOptions.builder().model("stub").build();
+        }
+    }
+}
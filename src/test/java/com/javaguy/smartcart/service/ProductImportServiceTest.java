@@ -0,0 +1,119 @@
+package com.javaguy.smartcart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaguy.smartcart.dto.ProductImportProgress;
+import com.javaguy.smartcart.dto.ProductImportProgress.RejectedRow;
+import com.javaguy.smartcart.entity.Product;
+import com.javaguy.smartcart.event.ProductsSavedEvent;
+import com.javaguy.smartcart.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductImportServiceTest {
+
+    @Test
+    void splitsQuotedCsvFieldsAndValidatesTheHeader() {
+        assertEquals(List.of("Mug", "Says \"hi\", twice", "", "9.99"),
+                ProductImportService.splitCsv("Mug,\"Says \"\"hi\"\", twice\",,9.99"));
+        assertThrows(IllegalArgumentException.class, () -> ProductImportService.splitCsv("\"open,field"));
+
+        assertEquals(Map.of("name", 0, "price", 1, "stockquantity", 2),
+                ProductImportService.parseCsvHeader(" Name ,PRICE,stock_quantity"));
+        assertThrows(IllegalArgumentException.class, () -> ProductImportService.parseCsvHeader("name,price,colour"));
+        assertThrows(IllegalArgumentException.class, () -> ProductImportService.parseCsvHeader("name,category"));
+    }
+
+    @Test
+    void reportsRejectedRowsByLineAndPublishesOnlyCommittedBatches() throws Exception {
+        List<Object> events = new ArrayList<>();
+        AtomicBoolean failCommit = new AtomicBoolean();
+        ProductImportService importService = new ProductImportService(failingCommitOn("Broken", failCommit),
+                new TransactionTemplate(new FailingCommitTransactionManager(failCommit)), events::add, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new SimpleMeterRegistry(), 2, 100);
+        String csv = """
+                name,price,category
+                Mug,9.99,Kitchen
+                ,5.00,Kitchen
+                Lamp,cheap,Home
+                Chair,49.00,Home
+                Broken,1.00,Home
+                Desk,"120.00",Home
+                Pen,1.50
+                """;
+        List<ProductImportProgress> progress = new ArrayList<>();
+
+        importService.importProducts(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ProductImportService.Format.CSV, progress::add);
+
+        ProductImportProgress last = progress.get(progress.size() - 1);
+        assertTrue(last.done());
+        assertEquals(2, last.totalImported());
+        assertEquals(5, last.totalRejected());
+        List<Long> rejectedLines = progress.stream()
+                .flatMap(update -> update.rejectedRows().stream())
+                .map(RejectedRow::line)
+                .sorted()
+                .toList();
+        assertEquals(List.of(3L, 4L, 6L, 7L, 8L), rejectedLines);
+        // the batch holding Broken and Desk failed to commit and never reached the read models
+        assertEquals(List.of(List.of("Mug", "Chair")), events.stream()
+                .map(event -> ((ProductsSavedEvent) event).products().stream().map(Product::getName).toList())
+                .toList());
+    }
+
+    /**
+     * Saves by assigning ids; the commit of a batch holding a product with the given name fails.
+     */
+    private static ProductRepository failingCommitOn(String failingName, AtomicBoolean failCommit) {
+        AtomicLong ids = new AtomicLong();
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "saveAll" -> {
+                        @SuppressWarnings("unchecked")
+                        List<Product> products = new ArrayList<>((List<Product>) args[0]);
+                        failCommit.set(products.stream().anyMatch(product -> failingName.equals(product.getName())));
+                        products.forEach(product -> product.setId(ids.incrementAndGet()));
+                        yield products;
+                    }
+                    case "flush" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private record FailingCommitTransactionManager(AtomicBoolean failCommit) implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            if (failCommit.getAndSet(false)) {
+                throw new IllegalStateException("constraint violated on commit");
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.javaguy.smartcart.service;
+
+import com.javaguy.smartcart.dto.ProductView;
+import com.javaguy.smartcart.event.CustomerProfileChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecommendationMaterializerTest {
+
+    private final CountingRecommendations recommendations = new CountingRecommendations();
+    private final RecommendationMaterializer materializer =
+            new RecommendationMaterializer(recommendations, null, Duration.ofHours(24), 2, false);
+
+    @Test
+    void changedProfileServesTheStaleEntryUntilTheRefreshReplacesIt() {
+        RecommendationMaterializer.Materialized first = materializer.getRecommendations(1);
+        assertFalse(first.stale());
+
+        materializer.onCustomerProfileChanged(new CustomerProfileChangedEvent(1));
+
+        RecommendationMaterializer.Materialized stale = materializer.getRecommendations(1);
+        assertTrue(stale.stale());
+        assertEquals(first.products(), stale.products());
+        assertEquals(1, materializer.pendingRefreshes());
+
+        materializer.refreshBatch();
+
+        RecommendationMaterializer.Materialized refreshed = materializer.getRecommendations(1);
+        assertFalse(refreshed.stale());
+        assertEquals(List.of(2L), refreshed.products().stream().map(ProductView::id).toList());
+        assertEquals(List.of(1L, 1L), recommendations.customers);
+    }
+
+    @Test
+    void eachIntervalRefreshesAtMostTheBatchSize() {
+        for (long customerId = 1; customerId <= 5; customerId++) {
+            materializer.onCustomerProfileChanged(new CustomerProfileChangedEvent(customerId));
+        }
+        // invalidating a customer that is already queued does not queue it twice
+        materializer.onCustomerProfileChanged(new CustomerProfileChangedEvent(1));
+        assertEquals(5, materializer.pendingRefreshes());
+
+        materializer.refreshBatch();
+        assertEquals(List.of(1L, 2L), recommendations.customers);
+        assertEquals(3, materializer.pendingRefreshes());
+
+        materializer.refreshBatch();
+        materializer.refreshBatch();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), recommendations.customers);
+        assertEquals(0, materializer.pendingRefreshes());
+        assertEquals(5, materializer.size());
+    }
+
+    /**
+     * Answers each call with one product whose id is the number of the call.
+     */
+    private static final class CountingRecommendations extends AIRecommendationService {
+        final List<Long> customers = new ArrayList<>();
+
+        CountingRecommendations() {
+            super(null, null, null, null, null, null, null, null, null, "llm", 40);
+        }
+
+        @Override
+        public List<ProductView> getPersonalizedRecommendations(long customerId) {
+            customers.add(customerId);
+            long id = customers.size();
+            return List.of(new ProductView(id, "Product " + id, "", BigDecimal.TEN, "Books", "Acme", 1, null, null, List.of()));
+        }
+    }
+}